@@ -0,0 +1,577 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.bitsandpieces.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import org.bitsandpieces.util.collection.primitive.PrimitiveList.IntList;
+import org.bitsandpieces.util.collection.primitive.PrimitiveList.LongList;
+
+/**
+ * Aho-Corasick multi-pattern search. A set of keywords is compiled once into
+ * an automaton, which finds all occurrences of all keywords in a single pass
+ * over a haystack.
+ * <p>
+ * Keywords compiled from {@code byte}s search {@code byte[]} haystacks (and
+ * {@code IOBuffer}s), keywords compiled from {@code char}s search
+ * {@code char[]} and {@code CharSequence} haystacks. Calling a search method
+ * of the other kind throws an {@code IllegalStateException}.
+ * <p>
+ * Each match is reported as a pair of values: the index following the last
+ * unit of the match, followed by the index of the keyword in the order in
+ * which the keywords were specified. The match itself starts at
+ * {@code end - keywordLength(keyword)}. Matches are reported in order of their
+ * end indices. Matches that end at the same index are reported longest
+ * keyword first. Identical keywords are each reported.
+ * <p>
+ * To search data that arrives in pieces, a {@link Scanner} retains its state
+ * between calls, so that keywords spanning several pieces are found as well.
+ * <p>
+ * The automaton is stored in a handful of {@code int[]} tables and is
+ * immutable. It may be shared between threads, but {@code Scanner}s may not.
+ *
+ * @author Jan Kebernik
+ */
+public final class AhoCorasick {
+
+	private static final int ROOT_SIZE = 256;
+	// byte automata up to this many states get a full transition table (4 MB)
+	private static final int MAX_TABLE_STATES = 4096;
+
+	private final boolean binary;
+	// keyword lengths and chains of identical keywords
+	private final int[] lengths;
+	private final int[] same;
+	// transitions of state x are syms/dests[base[x]] to syms/dests[base[x + 1]], sorted by symbol
+	private final int[] base;
+	private final int[] syms;
+	private final int[] dests;
+	// transitions of the root state for symbols below 256. the root state loops onto itself.
+	private final int[] root;
+	private final int[] fail;
+	// first keyword ending at a state, or -1
+	private final int[] out;
+	// nearest state along the fail chain with a keyword ending at it, or 0
+	private final int[] dict;
+	// full transition table of small byte automata, 256 entries per state, or null
+	private final int[] table;
+
+	private AhoCorasick(boolean binary, int[][] keywords) {
+		int k = keywords.length;
+		if (k == 0) {
+			throw new IllegalArgumentException("No keywords specified.");
+		}
+		this.binary = binary;
+		int[] lens = new int[k];
+		int cap = 1;
+		for (int i = 0; i < k; i++) {
+			int n = keywords[i].length;
+			if (n == 0) {
+				throw new IllegalArgumentException("Empty keyword at index " + i);
+			}
+			lens[i] = n;
+			cap += n;
+		}
+		// build the trie. edges are kept in singly linked lists per state for now.
+		int[] first = ArrayUtil.fill(new int[cap], -1);
+		int[] next = new int[cap];
+		int[] esym = new int[cap];
+		int[] edst = new int[cap];
+		int[] o = ArrayUtil.fill(new int[cap], -1);
+		int[] dup = ArrayUtil.fill(new int[k], -1);
+		int states = 1;
+		int edges = 0;
+		for (int i = 0; i < k; i++) {
+			int x = 0;
+			for (int c : keywords[i]) {
+				int e = first[x];
+				while (e >= 0 && esym[e] != c) {
+					e = next[e];
+				}
+				if (e < 0) {
+					e = edges++;
+					esym[e] = c;
+					edst[e] = states++;
+					next[e] = first[x];
+					first[x] = e;
+				}
+				x = edst[e];
+			}
+			if (o[x] < 0) {
+				o[x] = i;
+			} else {
+				// append to the chain of identical keywords
+				int j = o[x];
+				while (dup[j] >= 0) {
+					j = dup[j];
+				}
+				dup[j] = i;
+			}
+		}
+		// compact into sorted tables
+		int[] b = new int[states + 1];
+		int[] s = new int[edges];
+		int[] d = new int[edges];
+		for (int x = 0, y = 0; x < states; x++) {
+			b[x] = y;
+			int z = y;
+			for (int e = first[x]; e >= 0; e = next[e]) {
+				// insertion sort, states rarely have many transitions
+				int c = esym[e];
+				int j = z++;
+				while (j > y && s[j - 1] > c) {
+					s[j] = s[j - 1];
+					d[j] = d[j - 1];
+					j--;
+				}
+				s[j] = c;
+				d[j] = edst[e];
+			}
+			y = z;
+			b[x + 1] = y;
+		}
+		this.lengths = lens;
+		this.same = dup;
+		this.base = b;
+		this.syms = s;
+		this.dests = d;
+		int[] r = new int[ROOT_SIZE];
+		for (int j = b[0]; j < b[1] && s[j] < ROOT_SIZE; j++) {
+			r[s[j]] = d[j];
+		}
+		this.root = r;
+		this.out = o.length == states ? o : Arrays.copyOf(o, states);
+		// breadth-first computation of fail and dictionary links
+		int[] f = new int[states];
+		int[] dl = new int[states];
+		int[] queue = new int[states];
+		this.fail = f;	// filled in as the search proceeds, shallower states first
+		int head = 0;
+		int tail = 0;
+		for (int j = b[0]; j < b[1]; j++) {
+			queue[tail++] = d[j];	// fail to root
+		}
+		while (head < tail) {
+			int x = queue[head++];
+			for (int j = b[x]; j < b[x + 1]; j++) {
+				int y = d[j];
+				int z = step(f[x], s[j]);
+				f[y] = z;
+				dl[y] = this.out[z] >= 0 ? z : dl[z];
+				queue[tail++] = y;
+			}
+		}
+		this.dict = dl;
+		this.table = binary && states <= MAX_TABLE_STATES ? table(states) : null;
+	}
+
+	/**
+	 * Compiles the specified {@code byte} keywords.
+	 *
+	 * @param keywords the keywords to search for.
+	 * @return an {@code AhoCorasick} instance searching {@code byte[]}
+	 * haystacks.
+	 * @throws IllegalArgumentException if no keywords are specified or if any
+	 * keyword is empty.
+	 */
+	public static AhoCorasick compile(byte[]... keywords) {
+		int[][] k = new int[keywords.length][];
+		for (int i = 0; i < k.length; i++) {
+			byte[] w = keywords[i];
+			int[] a = new int[w.length];
+			for (int j = 0; j < a.length; j++) {
+				a[j] = w[j] & 0xff;
+			}
+			k[i] = a;
+		}
+		return new AhoCorasick(true, k);
+	}
+
+	/**
+	 * Compiles the specified {@code char} keywords.
+	 *
+	 * @param keywords the keywords to search for.
+	 * @return an {@code AhoCorasick} instance searching {@code char[]} and
+	 * {@code CharSequence} haystacks.
+	 * @throws IllegalArgumentException if no keywords are specified or if any
+	 * keyword is empty.
+	 */
+	public static AhoCorasick compile(CharSequence... keywords) {
+		int[][] k = new int[keywords.length][];
+		for (int i = 0; i < k.length; i++) {
+			CharSequence w = keywords[i];
+			int[] a = new int[w.length()];
+			for (int j = 0; j < a.length; j++) {
+				a[j] = w.charAt(j);
+			}
+			k[i] = a;
+		}
+		return new AhoCorasick(false, k);
+	}
+
+	/**
+	 * Returns the number of keywords.
+	 *
+	 * @return the number of keywords.
+	 */
+	public int keywords() {
+		return this.lengths.length;
+	}
+
+	/**
+	 * Returns the length of the specified keyword.
+	 *
+	 * @param keyword the index of the keyword.
+	 * @return the length of the specified keyword.
+	 * @throws IndexOutOfBoundsException if the index is out of bounds.
+	 */
+	public int keywordLength(int keyword) {
+		return this.lengths[keyword];
+	}
+
+	/**
+	 * Returns a new {@code Scanner} for this automaton.
+	 *
+	 * @return a new {@code Scanner} for this automaton.
+	 */
+	public Scanner newScanner() {
+		return new Scanner();
+	}
+
+	// resolves all fail transitions in advance
+	private int[] table(int states) {
+		int[] t = new int[states << 8];
+		System.arraycopy(this.root, 0, t, 0, ROOT_SIZE);
+		// rows are completed breadth-first, so the row of the fail state is always complete
+		int[] b = this.base;
+		int[] s = this.syms;
+		int[] d = this.dests;
+		int[] f = this.fail;
+		int[] queue = new int[states];
+		int head = 0;
+		int tail = 0;
+		for (int j = b[0]; j < b[1]; j++) {
+			queue[tail++] = d[j];
+		}
+		while (head < tail) {
+			int x = queue[head++];
+			System.arraycopy(t, f[x] << 8, t, x << 8, ROOT_SIZE);
+			for (int j = b[x]; j < b[x + 1]; j++) {
+				int y = d[j];
+				t[(x << 8) | s[j]] = y;
+				queue[tail++] = y;
+			}
+		}
+		return t;
+	}
+
+	private int next(int x, int c) {
+		int[] t = this.table;
+		return t != null ? t[(x << 8) | c] : step(x, c);
+	}
+
+	// goto and fail
+	private int step(int x, int c) {
+		while (true) {
+			if (x == 0) {
+				return c < ROOT_SIZE ? this.root[c] : find(0, c);
+			}
+			int y = find(x, c);
+			if (y > 0) {
+				return y;
+			}
+			x = this.fail[x];
+		}
+	}
+
+	// returns the target of the transition or 0 if there is none
+	private int find(int x, int c) {
+		int[] s = this.syms;
+		int lo = this.base[x];
+		int hi = this.base[x + 1] - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int v = s[mid];
+			if (v < c) {
+				lo = mid + 1;
+			} else if (v > c) {
+				hi = mid - 1;
+			} else {
+				return this.dests[mid];
+			}
+		}
+		return 0;
+	}
+
+	// reports all keywords ending at state x
+	private void report(int x, int end, IntList results) {
+		if (this.out[x] < 0) {
+			x = this.dict[x];
+		}
+		int[] o = this.out;
+		int[] d = this.dict;
+		int[] dup = this.same;
+		for (; x != 0; x = d[x]) {
+			for (int k = o[x]; k >= 0; k = dup[k]) {
+				results.addInt(end);
+				results.addInt(k);
+			}
+		}
+	}
+
+	private void report(int x, long end, LongList results) {
+		if (this.out[x] < 0) {
+			x = this.dict[x];
+		}
+		int[] o = this.out;
+		int[] d = this.dict;
+		int[] dup = this.same;
+		for (; x != 0; x = d[x]) {
+			for (int k = o[x]; k >= 0; k = dup[k]) {
+				results.addLong(end);
+				results.addLong(k);
+			}
+		}
+	}
+
+	// true if any keyword ends at state x
+	private boolean matches(int x) {
+		return this.out[x] >= 0 || this.dict[x] != 0;
+	}
+
+	private void checkBinary() {
+		if (!this.binary) {
+			throw new IllegalStateException("Keywords consist of chars.");
+		}
+	}
+
+	private void checkText() {
+		if (this.binary) {
+			throw new IllegalStateException("Keywords consist of bytes.");
+		}
+	}
+
+	private static void checkRange(int length, int off, int len) {
+		if (off < 0 || len < 0 || off > length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Adds all matches within the specified range of the array to the
+	 * specified list.
+	 *
+	 * @param haystack the array to search.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @param results the list to which to add the matches.
+	 * @return {@code results}.
+	 * @throws IllegalStateException if the keywords consist of {@code char}s.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public IntList findAll(byte[] haystack, int off, int len, IntList results) {
+		checkRange(haystack.length, off, len);
+		Objects.requireNonNull(results);
+		checkBinary();
+		int x = 0;
+		for (int i = off, m = off + len; i < m;) {
+			x = next(x, haystack[i++] & 0xff);
+			if (matches(x)) {
+				report(x, i, results);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Adds all matches within the specified range of the array to the
+	 * specified list.
+	 *
+	 * @param haystack the array to search.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @param results the list to which to add the matches.
+	 * @return {@code results}.
+	 * @throws IllegalStateException if the keywords consist of {@code byte}s.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public IntList findAll(char[] haystack, int off, int len, IntList results) {
+		checkRange(haystack.length, off, len);
+		Objects.requireNonNull(results);
+		checkText();
+		int x = 0;
+		for (int i = off, m = off + len; i < m;) {
+			x = step(x, haystack[i++]);
+			if (matches(x)) {
+				report(x, i, results);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Adds all matches within the specified range of the
+	 * {@code CharSequence} to the specified list.
+	 *
+	 * @param haystack the {@code CharSequence} to search.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @param results the list to which to add the matches.
+	 * @return {@code results}.
+	 * @throws IllegalStateException if the keywords consist of {@code byte}s.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public IntList findAll(CharSequence haystack, int off, int len, IntList results) {
+		checkRange(haystack.length(), off, len);
+		Objects.requireNonNull(results);
+		checkText();
+		int x = 0;
+		for (int i = off, m = off + len; i < m;) {
+			x = step(x, haystack.charAt(i++));
+			if (matches(x)) {
+				report(x, i, results);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Searches data that arrives in consecutive pieces. A {@code Scanner}
+	 * treats all pieces passed to it as a single stream, so that keywords
+	 * spanning two or more pieces are found. Matches are reported with their
+	 * positions in that stream, which starts at {@code 0} and advances by the
+	 * length of every piece scanned.
+	 */
+	public final class Scanner {
+
+		private int state;
+		private long pos;
+
+		private Scanner() {
+		}
+
+		/**
+		 * Returns the {@code AhoCorasick} automaton of this {@code Scanner}.
+		 *
+		 * @return the {@code AhoCorasick} automaton of this {@code Scanner}.
+		 */
+		public AhoCorasick automaton() {
+			return AhoCorasick.this;
+		}
+
+		/**
+		 * Returns the number of units scanned so far, which is the stream
+		 * position at which the next piece starts.
+		 *
+		 * @return the number of units scanned so far.
+		 */
+		public long position() {
+			return this.pos;
+		}
+
+		/**
+		 * Resets this {@code Scanner}, discarding any partial matches and
+		 * resetting the stream position to {@code 0}.
+		 *
+		 * @return this {@code Scanner}.
+		 */
+		public Scanner reset() {
+			this.state = 0;
+			this.pos = 0L;
+			return this;
+		}
+
+		/**
+		 * Scans the next piece and adds all matches ending within it to the
+		 * specified list, as pairs of stream positions and keyword indices.
+		 *
+		 * @param piece the array holding the next piece.
+		 * @param off the offset of the piece.
+		 * @param len the length of the piece.
+		 * @param results the list to which to add the matches.
+		 * @return {@code results}.
+		 * @throws IllegalStateException if the keywords consist of
+		 * {@code char}s.
+		 * @throws IndexOutOfBoundsException if the range is out of bounds.
+		 */
+		public LongList scan(byte[] piece, int off, int len, LongList results) {
+			checkRange(piece.length, off, len);
+			Objects.requireNonNull(results);
+			checkBinary();
+			int x = this.state;
+			long p = this.pos - off;
+			for (int i = off, m = off + len; i < m;) {
+				x = next(x, piece[i++] & 0xff);
+				if (matches(x)) {
+					report(x, p + i, results);
+				}
+			}
+			this.state = x;
+			this.pos += len;
+			return results;
+		}
+
+		/**
+		 * Scans the next piece and adds all matches ending within it to the
+		 * specified list, as pairs of stream positions and keyword indices.
+		 *
+		 * @param piece the array holding the next piece.
+		 * @param off the offset of the piece.
+		 * @param len the length of the piece.
+		 * @param results the list to which to add the matches.
+		 * @return {@code results}.
+		 * @throws IllegalStateException if the keywords consist of
+		 * {@code byte}s.
+		 * @throws IndexOutOfBoundsException if the range is out of bounds.
+		 */
+		public LongList scan(char[] piece, int off, int len, LongList results) {
+			checkRange(piece.length, off, len);
+			Objects.requireNonNull(results);
+			checkText();
+			int x = this.state;
+			long p = this.pos - off;
+			for (int i = off, m = off + len; i < m;) {
+				x = step(x, piece[i++]);
+				if (matches(x)) {
+					report(x, p + i, results);
+				}
+			}
+			this.state = x;
+			this.pos += len;
+			return results;
+		}
+
+		/**
+		 * Scans the next piece and adds all matches ending within it to the
+		 * specified list, as pairs of stream positions and keyword indices.
+		 *
+		 * @param piece the {@code CharSequence} holding the next piece.
+		 * @param off the offset of the piece.
+		 * @param len the length of the piece.
+		 * @param results the list to which to add the matches.
+		 * @return {@code results}.
+		 * @throws IllegalStateException if the keywords consist of
+		 * {@code byte}s.
+		 * @throws IndexOutOfBoundsException if the range is out of bounds.
+		 */
+		public LongList scan(CharSequence piece, int off, int len, LongList results) {
+			checkRange(piece.length(), off, len);
+			Objects.requireNonNull(results);
+			checkText();
+			int x = this.state;
+			long p = this.pos - off;
+			for (int i = off, m = off + len; i < m;) {
+				x = step(x, piece.charAt(i++));
+				if (matches(x)) {
+					report(x, p + i, results);
+				}
+			}
+			this.state = x;
+			this.pos += len;
+			return results;
+		}
+	}
+}
@@ -0,0 +1,736 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.bitsandpieces.util;
+
+import java.util.Objects;
+import org.bitsandpieces.util.collection.AbstractCyclicArray;
+
+/**
+ * {@link StringMaker} alternative that stores its chars in a cyclic gap array
+ * (see {@link AbstractCyclicArray}). Rather than shifting every char that
+ * follows, an insertion or deletion only moves the chars between the edit and
+ * the gap left by the previous edit. Repeated edits around a moving cursor
+ * therefore cost in proportion to the distance moved, instead of the length of
+ * the contents, while appending remains as cheap as with a
+ * {@code StringMaker}.
+ * <p>
+ * {@code float}s and {@code double}s are appended as printed by
+ * {@link DoubleFormat#SHORTEST}, as with a {@code StringMaker}.
+ *
+ * @author Jan Kebernik
+ */
+public class CyclicStringMaker extends AbstractCyclicArray<char[]> implements Appendable, CharSequence {
+
+	// max array length on some VMs.
+	private static final int MAX_ARRAY_CAPACITY = Integer.MAX_VALUE - 8;
+
+	private static final char[] EMPTY = {};
+	private static final Format DEFAULT = Formats.DEC;
+
+	private static final Transfer<char[], char[], Object> ARRAY = (char[] b, int bOff, char[] a, int aOff, int len, Object attachment) -> {
+		System.arraycopy(b, bOff, a, aOff, len);
+	};
+
+	private static final Transfer<String, char[], Object> STRING = (String b, int bOff, char[] a, int aOff, int len, Object attachment) -> {
+		b.getChars(bOff, bOff + len, a, aOff);
+	};
+
+	private static final Transfer<CharSequence, char[], Object> SEQUENCE = (CharSequence b, int bOff, char[] a, int aOff, int len, Object attachment) -> {
+		for (int m = aOff + len; aOff < m; aOff++, bOff++) {
+			a[aOff] = b.charAt(bOff);
+		}
+	};
+
+	private char[] chars;
+	private final Target target = new Target();
+	// Formats write here, before the result is inserted. also holds the
+	// chars around the ends of runs of the array while searching
+	private char[] scratch;
+	// the most recently searched for String, compiled
+	private Horspool pattern = null;
+
+	public CyclicStringMaker() {
+		super(0, 0, 0);
+		this.chars = EMPTY;
+	}
+
+	public CyclicStringMaker(int initalCapacity) {
+		super(0, 0, 0);
+		this.chars = new char[initalCapacity];
+	}
+
+	@Override
+	protected final char[] _newArray(int len) {
+		return new char[len];
+	}
+
+	public CyclicStringMaker clear() {
+		this._size = 0;
+		this._idx = 0;
+		this._len = 0;
+		return this;
+	}
+
+	@Override
+	public int length() {
+		return this._size;
+	}
+
+	private char[] _ensureInternal(int s, int minCap) {
+		if (minCap < 0) {
+			throw new OutOfMemoryError();
+		}
+		char[] a = this.chars;
+		int aLen = a.length;
+		if (minCap <= aLen) {
+			return a;
+		}
+		char[] b = new char[newCap(aLen, minCap)];
+		_growUnfair(a, aLen, b, s, this._idx, this._len);	// modifies this._idx
+		return (this.chars = b);
+	}
+
+	public CyclicStringMaker ensureCapacity(int minCapacity) {
+		if (minCapacity > this.chars.length) {
+			_ensureInternal(this._size, minCapacity);
+		}
+		// no action if minCapacity <= 0
+		return this;
+	}
+
+	public CyclicStringMaker trimToSize() {
+		int s = this._size;
+		char[] a = this.chars;
+		if (s < a.length) {
+			char[] b = new char[s];
+			_read(a, a.length, s, this._idx, this._len, 0, b, 0, s);
+			this.chars = b;
+			this._idx = 0;
+			this._len = 0;
+		}
+		return this;
+	}
+
+	private static int newCap(int aLen, int minCap) {
+		int newCap = 2 + (aLen << 1);
+		if (newCap < 0) {
+			newCap = minCap > MAX_ARRAY_CAPACITY
+					? Integer.MAX_VALUE
+					: MAX_ARRAY_CAPACITY;
+		}
+		if (newCap < minCap) {
+			newCap = minCap;
+		}
+		return newCap;
+	}
+
+	private static void rangeCheck(int size, int start, int end) {
+		if (start > end) {
+			throw new IllegalArgumentException(
+					"start(" + start + ") > end(" + end + ")");
+		}
+		if (start < 0) {
+			throw new StringIndexOutOfBoundsException(start);
+		}
+		if (end > size) {
+			throw new StringIndexOutOfBoundsException(end);
+		}
+	}
+
+	private static void indexCheck(int size, int index) {
+		if (index < 0 || index > size) {
+			throw new StringIndexOutOfBoundsException(index);
+		}
+	}
+
+	public CyclicStringMaker append(Object s) {
+		int _s = this._size;
+		_insert(_s, _s, String.valueOf(s));
+		return this;
+	}
+
+	public CyclicStringMaker insert(int index, Object s) {
+		int _s = this._size;
+		indexCheck(_s, index);
+		_insert(_s, index, String.valueOf(s));
+		return this;
+	}
+
+	public CyclicStringMaker append(String s) {
+		int _s = this._size;
+		_insert(_s, _s, String.valueOf(s));
+		return this;
+	}
+
+	public CyclicStringMaker insert(int index, String s) {
+		int _s = this._size;
+		indexCheck(_s, index);
+		_insert(_s, index, String.valueOf(s));
+		return this;
+	}
+
+	private void _insert(int s, int index, String x) {
+		int n = x.length();
+		char[] a = _ensureInternal(s, s + n);
+		_insert(a, a.length, s, this._idx, this._len, index, x, 0, n, STRING, null);
+	}
+
+	public CyclicStringMaker append(char[] a) {
+		int s = this._size;
+		_insert(s, s, a, 0, a.length);
+		return this;
+	}
+
+	public CyclicStringMaker append(char[] a, int off, int len) {
+		int s = this._size;
+		if (off < 0 || len < 0 || off > a.length - len) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		_insert(s, s, a, off, len);
+		return this;
+	}
+
+	public CyclicStringMaker insert(int index, char[] a) {
+		int s = this._size;
+		indexCheck(s, index);
+		_insert(s, index, a, 0, a.length);
+		return this;
+	}
+
+	public CyclicStringMaker insert(int index, char[] a, int off, int len) {
+		int s = this._size;
+		indexCheck(s, index);
+		if (off < 0 || len < 0 || off > a.length - len) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		_insert(s, index, a, off, len);
+		return this;
+	}
+
+	private void _insert(int s, int index, char[] x, int off, int len) {
+		char[] a = _ensureInternal(s, s + len);
+		_insert(a, a.length, s, this._idx, this._len, index, x, off, len, ARRAY, null);
+	}
+
+	@Override
+	public CyclicStringMaker append(CharSequence s) {
+		int _s = this._size;
+		if (s == null) {
+			_insert(_s, _s, "null");
+			return this;
+		}
+		_insert(_s, _s, s, 0, s.length());
+		return this;
+	}
+
+	@Override
+	public CyclicStringMaker append(CharSequence s, int start, int end) {
+		int _s = this._size;
+		if (s == null) {
+			_insert(_s, _s, "null");
+			return this;
+		}
+		rangeCheck(s.length(), start, end);
+		_insert(_s, _s, s, start, end);
+		return this;
+	}
+
+	public CyclicStringMaker insert(int index, CharSequence s) {
+		int _s = this._size;
+		indexCheck(_s, index);
+		if (s == null) {
+			_insert(_s, index, "null");
+			return this;
+		}
+		_insert(_s, index, s, 0, s.length());
+		return this;
+	}
+
+	public CyclicStringMaker insert(int index, CharSequence s, int start, int end) {
+		int _s = this._size;
+		indexCheck(_s, index);
+		if (s == null) {
+			_insert(_s, index, "null");
+			return this;
+		}
+		rangeCheck(s.length(), start, end);
+		_insert(_s, index, s, start, end);
+		return this;
+	}
+
+	private void _insert(int s, int index, CharSequence x, int start, int end) {
+		if (x instanceof String) {
+			int n = end - start;
+			char[] a = _ensureInternal(s, s + n);
+			_insert(a, a.length, s, this._idx, this._len, index, (String) x, start, n, STRING, null);
+			return;
+		}
+		if (x == this) {
+			// the contents would shift while being read
+			_insert(s, index, subSequence(start, end));
+			return;
+		}
+		int n = end - start;
+		char[] a = _ensureInternal(s, s + n);
+		_insert(a, a.length, s, this._idx, this._len, index, x, start, n, SEQUENCE, null);
+	}
+
+	public CyclicStringMaker append(boolean i) {
+		int s = this._size;
+		_insert(s, s, String.valueOf(i));
+		return this;
+	}
+
+	public CyclicStringMaker insert(int index, boolean i) {
+		int s = this._size;
+		indexCheck(s, index);
+		_insert(s, index, String.valueOf(i));
+		return this;
+	}
+
+	@Override
+	public CyclicStringMaker append(char i) {
+		int s = this._size;
+		_insert(s, s, i);
+		return this;
+	}
+
+	public CyclicStringMaker insert(int index, char i) {
+		int s = this._size;
+		indexCheck(s, index);
+		_insert(s, index, i);
+		return this;
+	}
+
+	private void _insert(int s, int index, char x) {
+		char[] a = _ensureInternal(s, s + 1);
+		a[_insertIndex(a, a.length, s, this._idx, this._len, index)] = x;
+	}
+
+	public CyclicStringMaker append(byte i, Format f) {
+		return insert(this._size, i, f);
+	}
+
+	public CyclicStringMaker insert(int index, byte i, Format f) {
+		Objects.requireNonNull(f);
+		int s = this._size;
+		indexCheck(s, index);
+		int n = f.copy(this.target, 0, i);
+		_insert(s, index, this.scratch, 0, n);
+		return this;
+	}
+
+	public CyclicStringMaker append(byte i) {
+		return insert(this._size, i, DEFAULT);
+	}
+
+	public CyclicStringMaker insert(int index, byte i) {
+		return insert(index, i, DEFAULT);
+	}
+
+	public CyclicStringMaker append(char i, Format f) {
+		return insert(this._size, i, f);
+	}
+
+	public CyclicStringMaker insert(int index, char i, Format f) {
+		Objects.requireNonNull(f);
+		int s = this._size;
+		indexCheck(s, index);
+		int n = f.copy(this.target, 0, i);
+		_insert(s, index, this.scratch, 0, n);
+		return this;
+	}
+
+	public CyclicStringMaker append(short i, Format f) {
+		return insert(this._size, i, f);
+	}
+
+	public CyclicStringMaker insert(int index, short i, Format f) {
+		Objects.requireNonNull(f);
+		int s = this._size;
+		indexCheck(s, index);
+		int n = f.copy(this.target, 0, i);
+		_insert(s, index, this.scratch, 0, n);
+		return this;
+	}
+
+	public CyclicStringMaker append(short i) {
+		return insert(this._size, i, DEFAULT);
+	}
+
+	public CyclicStringMaker insert(int index, short i) {
+		return insert(index, i, DEFAULT);
+	}
+
+	public CyclicStringMaker append(int i, Format f) {
+		return insert(this._size, i, f);
+	}
+
+	public CyclicStringMaker insert(int index, int i, Format f) {
+		Objects.requireNonNull(f);
+		int s = this._size;
+		indexCheck(s, index);
+		int n = f.copy(this.target, 0, i);
+		_insert(s, index, this.scratch, 0, n);
+		return this;
+	}
+
+	public CyclicStringMaker append(int i) {
+		return insert(this._size, i, DEFAULT);
+	}
+
+	public CyclicStringMaker insert(int index, int i) {
+		return insert(index, i, DEFAULT);
+	}
+
+	public CyclicStringMaker append(long i, Format f) {
+		return insert(this._size, i, f);
+	}
+
+	public CyclicStringMaker insert(int index, long i, Format f) {
+		Objects.requireNonNull(f);
+		int s = this._size;
+		indexCheck(s, index);
+		int n = f.copy(this.target, 0, i);
+		_insert(s, index, this.scratch, 0, n);
+		return this;
+	}
+
+	public CyclicStringMaker append(long i) {
+		return insert(this._size, i, DEFAULT);
+	}
+
+	public CyclicStringMaker insert(int index, long i) {
+		return insert(index, i, DEFAULT);
+	}
+
+	public CyclicStringMaker append(float i, DoubleFormat f) {
+		return insert(this._size, i, f);
+	}
+
+	public CyclicStringMaker insert(int index, float i, DoubleFormat f) {
+		Objects.requireNonNull(f);
+		int s = this._size;
+		indexCheck(s, index);
+		int n = f.copy(this.target, 0, i);
+		_insert(s, index, this.scratch, 0, n);
+		return this;
+	}
+
+	public CyclicStringMaker append(float i) {
+		return insert(this._size, i, DoubleFormat.SHORTEST);
+	}
+
+	public CyclicStringMaker insert(int index, float i) {
+		return insert(index, i, DoubleFormat.SHORTEST);
+	}
+
+	public CyclicStringMaker append(double i, DoubleFormat f) {
+		return insert(this._size, i, f);
+	}
+
+	public CyclicStringMaker insert(int index, double i, DoubleFormat f) {
+		Objects.requireNonNull(f);
+		int s = this._size;
+		indexCheck(s, index);
+		int n = f.copy(this.target, 0, i);
+		_insert(s, index, this.scratch, 0, n);
+		return this;
+	}
+
+	public CyclicStringMaker append(double i) {
+		return insert(this._size, i, DoubleFormat.SHORTEST);
+	}
+
+	public CyclicStringMaker insert(int index, double i) {
+		return insert(index, i, DoubleFormat.SHORTEST);
+	}
+
+	public CyclicStringMaker delete(int index, int length) {
+		int s = this._size;
+		if (index < 0 || length < 0 || index > s - length) {
+			throw new StringIndexOutOfBoundsException();
+		}
+		char[] a = this.chars;
+		_remove(a, a.length, s, this._idx, this._len, index, length);
+		return this;
+	}
+
+	public CyclicStringMaker deleteCharAt(int index) {
+		int s = this._size;
+		if (index < 0 || index >= s) {
+			throw new StringIndexOutOfBoundsException();
+		}
+		char[] a = this.chars;
+		_remove(a, a.length, s, this._idx, this._len, index, 1);
+		return this;
+	}
+
+	public CyclicStringMaker replace(int start, int end, String s) {
+		Objects.requireNonNull(s);
+		int _s = this._size;
+		rangeCheck(_s, start, end);
+		char[] a = this.chars;
+		_remove(a, a.length, _s, this._idx, this._len, start, end - start);
+		// the gap now sits at "start"
+		_insert(this._size, start, s);
+		return this;
+	}
+
+	public int indexOf(char c) {
+		return _indexOf(c, 0, this._size);
+	}
+
+	public int indexOf(char c, int fromIndex) {
+		int s = this._size;
+		if (fromIndex < 0 || fromIndex >= s) {
+			throw new StringIndexOutOfBoundsException(fromIndex);
+		}
+		return _indexOf(c, fromIndex, s);
+	}
+
+	public int indexOf(char c, int fromIndex, int toIndex) {
+		rangeCheck(this._size, fromIndex, toIndex);
+		return _indexOf(c, fromIndex, toIndex);
+	}
+
+	// the contents occupy at most three runs of the array: the head, the tail,
+	// and whichever of them wraps around the end of the array.
+	// returns the length of the run holding the element at the specified
+	// logical index and those after it, which starts at physical index x.
+	private int _runForward(int aLen, int index, int x) {
+		return Math.min((index < this._len ? this._len : this._size) - index, aLen - x);
+	}
+
+	// returns the length of the run holding the element at the specified
+	// logical index and those before it, which ends at physical index x.
+	private int _runBackward(int index, int x) {
+		return Math.min(index - (index < this._len ? 0 : this._len), x) + 1;
+	}
+
+	private int _indexOf(char c, int fromIndex, int toIndex) {
+		char[] a = this.chars;
+		int aLen = a.length;
+		int s = this._size;
+		int i = this._idx;
+		int n = this._len;
+		for (int index = fromIndex; index < toIndex;) {
+			int x = _physicalIndex(aLen, s, i, n, index);
+			int r = Math.min(toIndex - index, _runForward(aLen, index, x));
+			for (int k = x, m = x + r; k < m; k++) {
+				if (a[k] == c) {
+					return index + k - x;
+				}
+			}
+			index += r;
+		}
+		return -1;
+	}
+
+	public int lastIndexOf(char c) {
+		return _lastIndexOf(c, 0, this._size);
+	}
+
+	public int lastIndexOf(char c, int fromIndex) {
+		int s = this._size;
+		if (fromIndex < 0 || fromIndex >= s) {
+			throw new StringIndexOutOfBoundsException(fromIndex);
+		}
+		return _lastIndexOf(c, fromIndex, s);
+	}
+
+	public int lastIndexOf(char c, int fromIndex, int toIndex) {
+		rangeCheck(this._size, fromIndex, toIndex);
+		return _lastIndexOf(c, fromIndex, toIndex);
+	}
+
+	private int _lastIndexOf(char c, int fromIndex, int toIndex) {
+		char[] a = this.chars;
+		int aLen = a.length;
+		int s = this._size;
+		int i = this._idx;
+		int n = this._len;
+		for (int index = toIndex - 1; index >= fromIndex;) {
+			int x = _physicalIndex(aLen, s, i, n, index);
+			int r = Math.min(index - fromIndex + 1, _runBackward(index, x));
+			for (int k = x, m = x - r; k > m; k--) {
+				if (a[k] == c) {
+					return index - (x - k);
+				}
+			}
+			index -= r;
+		}
+		return -1;
+	}
+
+	public int indexOf(String str) {
+		return indexOf(str, 0);
+	}
+
+	public int indexOf(String str, int fromIndex) {
+		int s = this._size;
+		if (fromIndex < 0) {
+			throw new StringIndexOutOfBoundsException(fromIndex);
+		}
+		if (fromIndex >= s) {
+			return str.length() == 0 ? s : -1;
+		}
+		if (str.length() == 0) {
+			return fromIndex;
+		}
+		return _indexOf(pattern(str), fromIndex, s);
+	}
+
+	public int lastIndexOf(String str) {
+		int s = this._size;
+		if (str.length() == 0) {
+			return s;
+		}
+		return _lastIndexOf(pattern(str), 0, s);
+	}
+
+	private Horspool pattern(String str) {
+		Horspool p = this.pattern;
+		if (p == null || !p.matches(str)) {
+			p = this.pattern = Horspool.compile(str);
+		}
+		return p;
+	}
+
+	// searched in place, so as not to disturb the gap. each run of the array
+	// is searched directly, matches spanning the end of a run in a copy of
+	// the chars around it.
+	private int _indexOf(Horspool p, int fromIndex, int toIndex) {
+		char[] a = this.chars;
+		int aLen = a.length;
+		int s = this._size;
+		int i = this._idx;
+		int n = this._len;
+		int m = p.length() - 1;
+		for (int index = fromIndex; index < toIndex;) {
+			int x = _physicalIndex(aLen, s, i, n, index);
+			int r = Math.min(toIndex - index, _runForward(aLen, index, x));
+			int y = p.indexOf(a, x, r);
+			if (y >= 0) {
+				return index + y - x;
+			}
+			index += r;
+			if (m > 0 && index < toIndex) {
+				int from = Math.max(fromIndex, index - m);
+				int len = Math.min(toIndex, index + m) - from;
+				char[] t = scratch(len);
+				_read(a, aLen, s, i, n, from, t, 0, len);
+				y = p.indexOf(t, 0, len);
+				if (y >= 0) {
+					return from + y;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private int _lastIndexOf(Horspool p, int fromIndex, int toIndex) {
+		char[] a = this.chars;
+		int aLen = a.length;
+		int s = this._size;
+		int i = this._idx;
+		int n = this._len;
+		int m = p.length() - 1;
+		for (int index = toIndex; index > fromIndex;) {
+			int x = _physicalIndex(aLen, s, i, n, index - 1);
+			int r = Math.min(index - fromIndex, _runBackward(index - 1, x));
+			int y = p.lastIndexOf(a, x - r + 1, r);
+			if (y >= 0) {
+				return index - 1 - (x - y);
+			}
+			index -= r;
+			if (m > 0 && index > fromIndex) {
+				int from = Math.max(fromIndex, index - m);
+				int len = Math.min(toIndex, index + m) - from;
+				char[] t = scratch(len);
+				_read(a, aLen, s, i, n, from, t, 0, len);
+				y = p.lastIndexOf(t, 0, len);
+				if (y >= 0) {
+					return from + y;
+				}
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		int s = this._size;
+		char[] a = this.chars;
+		char[] b = new char[s];
+		_read(a, a.length, s, this._idx, this._len, 0, b, 0, s);
+		return new String(b);
+	}
+
+	@Override
+	public char charAt(int index) {
+		int s = this._size;
+		if (index < 0 || index >= s) {
+			throw new StringIndexOutOfBoundsException(index);
+		}
+		char[] a = this.chars;
+		return a[_physicalIndex(a.length, s, this._idx, this._len, index)];
+	}
+
+	public void setCharAt(int index, char ch) {
+		int s = this._size;
+		if (index < 0 || index >= s) {
+			throw new StringIndexOutOfBoundsException(index);
+		}
+		char[] a = this.chars;
+		a[_physicalIndex(a.length, s, this._idx, this._len, index)] = ch;
+	}
+
+	@Override
+	public String subSequence(int start, int end) {
+		int s = this._size;
+		rangeCheck(s, start, end);
+		char[] a = this.chars;
+		char[] b = new char[end - start];
+		_read(a, a.length, s, this._idx, this._len, start, b, 0, b.length);
+		return new String(b);
+	}
+
+	public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+		int s = this._size;
+		if (srcBegin < 0) {
+			throw new StringIndexOutOfBoundsException(srcBegin);
+		}
+		if (srcEnd < 0 || srcEnd > s) {
+			throw new StringIndexOutOfBoundsException(srcEnd);
+		}
+		if (srcBegin > srcEnd) {
+			throw new StringIndexOutOfBoundsException("srcBegin > srcEnd");
+		}
+		int n = srcEnd - srcBegin;
+		if (dstBegin < 0 || dstBegin > dst.length - n) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		char[] a = this.chars;
+		_read(a, a.length, s, this._idx, this._len, srcBegin, dst, dstBegin, n);
+	}
+
+	private char[] scratch(int len) {
+		char[] t = this.scratch;
+		if (t == null || t.length < len) {
+			t = this.scratch = new char[Math.max(len, 32)];
+		}
+		return t;
+	}
+
+	private final class Target implements Format.ArrayTarget {
+
+		@Override
+		public char[] getArray(int off, int len) {
+			return scratch(off + len);
+		}
+	}
+}
@@ -0,0 +1,798 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.bitsandpieces.util;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import org.bitsandpieces.util.Format.ArrayTarget;
+
+/**
+ * Converts {@code double} and {@code float} values into characters without
+ * creating intermediate {@code String}s, by copying directly into the array
+ * provided by a {@link Format.ArrayTarget}.
+ * <p>
+ * All modes start from the shortest decimal that rounds back to the exact
+ * same value, as computed by the Schubfach algorithm (R. Giulietti, "The
+ * Schubfach way to render doubles"). The {@link #SHORTEST} mode prints that
+ * decimal in a layout similar to {@link Double#toString(double)} and
+ * {@link Float#toString(float)}: plain notation for magnitudes from
+ * {@code 10^-3} (inclusive) to {@code 10^7} (exclusive), and computerized
+ * scientific notation ({@code "1.0E-5"}) otherwise. {@link #fixed(int) Fixed}
+ * and {@link #scientific(int) scientific} modes round the shortest decimal
+ * half-up to the requested number of fraction digits.
+ * <p>
+ * The output is not guaranteed to match the JDK's. Before JDK 19,
+ * {@code Double.toString()} sometimes prints more digits than needed, or a
+ * different, equally short decimal: {@code 1.0E23} is printed as
+ * {@code "1.0E23"} here, but as {@code "9.999999999999999E22"} by
+ * {@code Double.toString()} on JDK 17. {@link java.util.Formatter} rounds the
+ * exact binary value instead of the shortest decimal, so {@code "%.nf"} and
+ * {@code "%.ne"} may differ as well, notably for large integers, which are
+ * printed here as the shortest decimal followed by zeros. Either way, the
+ * output always reads back as the exact same value.
+ * <p>
+ * NaN and infinite values are always printed as {@code "NaN"},
+ * {@code "Infinity"} and {@code "-Infinity"}. The sign of negative zero, and
+ * of negative values that round to zero, is preserved. Instances are immutable
+ * and may be shared between threads.
+ * <p>
+ * The static {@code parseDouble} methods read the output of every mode back
+ * without allocating, as long as the significant digits of the decimal form
+ * an integer below {@code 2^53} and its decimal exponent is within
+ * {@code [-22, 22]}, in which case a single, correctly rounded multiplication
+ * or division suffices. Other input is handed to
+ * {@link Double#parseDouble(String)}.
+ *
+ * @author Jan Kebernik
+ */
+public final class DoubleFormat {
+
+	/**
+	 * The largest precision accepted by {@link #fixed(int) fixed()} and
+	 * {@link #scientific(int) scientific()}. Large enough to print every
+	 * non-zero digit of the smallest subnormal {@code double} in fixed
+	 * notation.
+	 */
+	public static final int MAX_PRECISION = 400;
+
+	private static final int SHORT = 0;
+	private static final int FIXED = 1;
+	private static final int SCIENTIFIC = 2;
+
+	/**
+	 * Prints the shortest decimal that uniquely identifies a value, in a
+	 * layout similar to {@link Double#toString(double)}.
+	 */
+	public static final DoubleFormat SHORTEST = new DoubleFormat(SHORT, 0);
+
+	// double
+	private static final int D_Q_MIN = -1074;
+	private static final long D_C_MIN = 1L << 52;
+	private static final long D_T_MASK = D_C_MIN - 1L;
+	private static final long D_C_TINY = 3L;
+
+	// float
+	private static final int F_Q_MIN = -149;
+	private static final int F_C_MIN = 1 << 23;
+	private static final int F_T_MASK = F_C_MIN - 1;
+	private static final int F_C_TINY = 8;
+
+	private static final long MASK_63 = (1L << 63) - 1L;
+
+	private static final long[] POW10 = new long[19];
+	// exactly representable powers of ten
+	private static final double[] POW10_DOUBLE = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	// floor(10^-k * 2^(125 - flog2pow10(-k))) + 1, split into 63 high and 63 low bits
+	private static final int K_MIN = -324;
+	private static final int K_MAX = 292;
+	private static final long[] G = new long[(K_MAX - K_MIN + 1) << 1];
+
+	static {
+		long p = 1L;
+		for (int i = 0; i < POW10.length; i++, p *= 10L) {
+			POW10[i] = p;
+		}
+		BigInteger ten = BigInteger.TEN;
+		BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+		for (int k = K_MIN; k <= K_MAX; k++) {
+			int sh = 125 - flog2pow10(-k);
+			BigInteger g;
+			if (k <= 0) {
+				g = ten.pow(-k);
+				g = sh >= 0 ? g.shiftLeft(sh) : g.shiftRight(-sh);
+			} else {
+				g = BigInteger.ONE.shiftLeft(sh).divide(ten.pow(k));
+			}
+			g = g.add(BigInteger.ONE);
+			int i = (k - K_MIN) << 1;
+			G[i] = g.shiftRight(63).longValue();
+			G[i + 1] = g.and(mask).longValue();
+		}
+	}
+
+	private final int mode;
+	private final int precision;
+
+	private DoubleFormat(int mode, int precision) {
+		this.mode = mode;
+		this.precision = precision;
+	}
+
+	/**
+	 * Returns a {@code DoubleFormat} printing values in plain notation with
+	 * exactly {@code precision} fraction digits, rounding the shortest decimal
+	 * half-up. Similar to, but not always the same as,
+	 * {@code String.format("%.<precision>f", value)}.
+	 *
+	 * @param precision the number of fraction digits.
+	 * @return a {@code DoubleFormat} printing values in fixed-point notation.
+	 * @throws IllegalArgumentException if {@code precision} is negative or
+	 * greater than {@link #MAX_PRECISION}.
+	 */
+	public static DoubleFormat fixed(int precision) {
+		return new DoubleFormat(FIXED, checkPrecision(precision));
+	}
+
+	/**
+	 * Returns a {@code DoubleFormat} printing values as one digit, followed
+	 * by exactly {@code precision} fraction digits and a decimal exponent, as
+	 * in {@code "1.250E-4"}.
+	 *
+	 * @param precision the number of fraction digits.
+	 * @return a {@code DoubleFormat} printing values in scientific notation.
+	 * @throws IllegalArgumentException if {@code precision} is negative or
+	 * greater than {@link #MAX_PRECISION}.
+	 */
+	public static DoubleFormat scientific(int precision) {
+		return new DoubleFormat(SCIENTIFIC, checkPrecision(precision));
+	}
+
+	private static int checkPrecision(int precision) {
+		if (precision < 0 || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException("precision out of range [0, " + MAX_PRECISION + "]: " + precision);
+		}
+		return precision;
+	}
+
+	/**
+	 * Returns the number of fraction digits printed by this
+	 * {@code DoubleFormat}, or {@code -1} for {@link #SHORTEST}.
+	 *
+	 * @return the number of fraction digits printed by this
+	 * {@code DoubleFormat}, or {@code -1} for {@link #SHORTEST}.
+	 */
+	public int precision() {
+		return this.mode == SHORT ? -1 : this.precision;
+	}
+
+	/**
+	 * Copies the resulting characters into the array defined by the specified
+	 * {@code ArrayTarget}.
+	 *
+	 * @param t the {@code ArrayTarget} defining the char array.
+	 * @param off the offset to which to copy the resulting characters.
+	 * @param d the value whose character representation to copy.
+	 * @return the number of the characters copied into the array.
+	 */
+	public int copy(ArrayTarget t, int off, double d) {
+		Objects.requireNonNull(t);
+		long bits = Double.doubleToRawLongBits(d);
+		long m = bits & D_T_MASK;
+		int bq = (int) (bits >>> 52) & 0x7ff;
+		boolean neg = bits < 0L;
+		if (bq == 0x7ff) {
+			return special(t, off, m != 0L ? "NaN" : neg ? "-Infinity" : "Infinity");
+		}
+		if (bq != 0) {
+			int mq = 1075 - bq;
+			long c = D_C_MIN | m;
+			if (0 < mq && mq < 53) {
+				// integral values need no conversion
+				long f = c >> mq;
+				if (f << mq == c) {
+					return chars(t, off, neg, f, 0);
+				}
+			}
+			return toDecimal(t, off, neg, -mq, c, c == D_C_MIN && bq != 1, 0);
+		}
+		if (m == 0L) {
+			return chars(t, off, neg, 0L, 0);
+		}
+		return m < D_C_TINY
+				? toDecimal(t, off, neg, D_Q_MIN, 10L * m, false, -1)
+				: toDecimal(t, off, neg, D_Q_MIN, m, false, 0);
+	}
+
+	/**
+	 * Copies the resulting characters into the array defined by the specified
+	 * {@code ArrayTarget}.
+	 *
+	 * @param t the {@code ArrayTarget} defining the char array.
+	 * @param off the offset to which to copy the resulting characters.
+	 * @param f the value whose character representation to copy.
+	 * @return the number of the characters copied into the array.
+	 */
+	public int copy(ArrayTarget t, int off, float f) {
+		Objects.requireNonNull(t);
+		int bits = Float.floatToRawIntBits(f);
+		int m = bits & F_T_MASK;
+		int bq = (bits >>> 23) & 0xff;
+		boolean neg = bits < 0;
+		if (bq == 0xff) {
+			return special(t, off, m != 0 ? "NaN" : neg ? "-Infinity" : "Infinity");
+		}
+		if (bq != 0) {
+			int mq = 150 - bq;
+			int c = F_C_MIN | m;
+			if (0 < mq && mq < 24) {
+				int v = c >> mq;
+				if (v << mq == c) {
+					return chars(t, off, neg, v, 0);
+				}
+			}
+			return toDecimal(t, off, neg, -mq, c, c == F_C_MIN && bq != 1, 0);
+		}
+		if (m == 0) {
+			return chars(t, off, neg, 0L, 0);
+		}
+		return m < F_C_TINY
+				? toDecimal(t, off, neg, F_Q_MIN, 10L * m, false, -1)
+				: toDecimal(t, off, neg, F_Q_MIN, m, false, 0);
+	}
+
+	/**
+	 * Returns a new char array representing the specified value.
+	 *
+	 * @param d the value whose character representation to calculate.
+	 * @return a new char array representing the specified value
+	 */
+	public char[] toCharArray(double d) {
+		char[][] r = new char[1][];
+		copy((int off, int len) -> r[0] = new char[len], 0, d);
+		return r[0];
+	}
+
+	/**
+	 * Returns a new char array representing the specified value.
+	 *
+	 * @param f the value whose character representation to calculate.
+	 * @return a new char array representing the specified value
+	 */
+	public char[] toCharArray(float f) {
+		char[][] r = new char[1][];
+		copy((int off, int len) -> r[0] = new char[len], 0, f);
+		return r[0];
+	}
+
+	/**
+	 * Returns a new {@code String} representing the specified value.
+	 *
+	 * @param d the value whose character representation to calculate.
+	 * @return a new {@code String} representing the specified value
+	 */
+	public String toString(double d) {
+		return new String(toCharArray(d));
+	}
+
+	/**
+	 * Returns a new {@code String} representing the specified value.
+	 *
+	 * @param f the value whose character representation to calculate.
+	 * @return a new {@code String} representing the specified value
+	 */
+	public String toString(float f) {
+		return new String(toCharArray(f));
+	}
+
+	/**
+	 * Parses the specified text as a {@code double}.
+	 *
+	 * @param s the text to parse.
+	 * @return the parsed value.
+	 * @throws NumberFormatException if the text is not a valid {@code double}
+	 * as accepted by {@link Double#parseDouble(String)}, or has leading or
+	 * trailing whitespace.
+	 */
+	public static double parseDouble(CharSequence s) {
+		return parse(null, null, s, 0, s.length());
+	}
+
+	/**
+	 * Parses the specified range of the text as a {@code double}.
+	 *
+	 * @param s the text to parse.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the parsed value.
+	 * @throws NumberFormatException if the range does not hold a valid
+	 * {@code double} as accepted by {@link Double#parseDouble(String)}, or has
+	 * leading or trailing whitespace.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public static double parseDouble(CharSequence s, int off, int len) {
+		if (off < 0 || len < 0 || off > s.length() - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		return parse(null, null, s, off, len);
+	}
+
+	/**
+	 * Parses the specified range of the array as a {@code double}.
+	 *
+	 * @param a the array to parse.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the parsed value.
+	 * @throws NumberFormatException if the range does not hold a valid
+	 * {@code double} as accepted by {@link Double#parseDouble(String)}, or has
+	 * leading or trailing whitespace.
+	 * @throws ArrayIndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public static double parseDouble(char[] a, int off, int len) {
+		if (off < 0 || len < 0 || off > a.length - len) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		return parse(null, a, null, off, len);
+	}
+
+	/**
+	 * Parses the specified range of the array as a {@code double}. Each
+	 * {@code byte} is interpreted as an ISO-8859-1 (Latin-1) {@code char}.
+	 *
+	 * @param a the array to parse.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the parsed value.
+	 * @throws NumberFormatException if the range does not hold a valid
+	 * {@code double} as accepted by {@link Double#parseDouble(String)}, or has
+	 * leading or trailing whitespace.
+	 * @throws ArrayIndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public static double parseDouble(byte[] a, int off, int len) {
+		if (off < 0 || len < 0 || off > a.length - len) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		return parse(a, null, null, off, len);
+	}
+
+	// exactly one source is non-null
+	private static int charAt(byte[] b, char[] c, CharSequence s, int i) {
+		return b != null ? b[i] & 0xff : c != null ? c[i] : s.charAt(i);
+	}
+
+	private static double parse(byte[] b, char[] c, CharSequence s, int off, int len) {
+		int end = off + len;
+		int i = off;
+		boolean neg = false;
+		if (i < end) {
+			int ch = charAt(b, c, s, i);
+			if (ch == '-' || ch == '+') {
+				neg = ch == '-';
+				i++;
+			}
+		}
+		long m = 0L;
+		// significant digits in m, excluding leading zeros
+		int n = 0;
+		int exp = 0;
+		boolean any = false;
+		boolean lost = false;
+		for (int d; i < end && (d = charAt(b, c, s, i) - '0') >= 0 && d <= 9; i++) {
+			any = true;
+			if (n < 18) {
+				m = m * 10L + d;
+				if (m != 0L) {
+					n++;
+				}
+			} else {
+				exp++;
+				lost |= d != 0;
+			}
+		}
+		if (i < end && charAt(b, c, s, i) == '.') {
+			i++;
+			for (int d; i < end && (d = charAt(b, c, s, i) - '0') >= 0 && d <= 9; i++) {
+				any = true;
+				if (n < 18) {
+					m = m * 10L + d;
+					if (m != 0L) {
+						n++;
+					}
+					exp--;
+				} else {
+					lost |= d != 0;
+				}
+			}
+		}
+		if (any && i < end && (charAt(b, c, s, i) | 0x20) == 'e') {
+			i++;
+			boolean eneg = false;
+			if (i < end) {
+				int ch = charAt(b, c, s, i);
+				if (ch == '-' || ch == '+') {
+					eneg = ch == '-';
+					i++;
+				}
+			}
+			int e = 0;
+			boolean digits = false;
+			for (int d; i < end && (d = charAt(b, c, s, i) - '0') >= 0 && d <= 9; i++) {
+				digits = true;
+				if (e < 100_000) {
+					e = e * 10 + d;
+				}
+			}
+			if (!digits) {
+				any = false;
+			}
+			exp += eneg ? -e : e;
+		}
+		if (any && i == end && !lost) {
+			if (m == 0L) {
+				return neg ? -0.0d : 0.0d;
+			}
+			if (m < 1L << 53 && exp >= -22 && exp <= 22) {
+				double v = exp < 0 ? m / POW10_DOUBLE[-exp] : m * POW10_DOUBLE[exp];
+				return neg ? -v : v;
+			}
+		}
+		return slowParse(b, c, s, off, len);
+	}
+
+	private static double slowParse(byte[] b, char[] c, CharSequence s, int off, int len) {
+		String str = b != null ? new String(b, off, len, StandardCharsets.ISO_8859_1)
+				: c != null ? new String(c, off, len)
+						: s.subSequence(off, off + len).toString();
+		if (len == 0 || str.charAt(0) <= ' ' || str.charAt(len - 1) <= ' ') {
+			// Double.parseDouble() trims whitespace
+			throw new NumberFormatException("Illegal number: \"" + str + "\"");
+		}
+		return Double.parseDouble(str);
+	}
+
+	@Override
+	public String toString() {
+		switch (this.mode) {
+			case FIXED:
+				return "DoubleFormat[fixed, " + this.precision + "]";
+			case SCIENTIFIC:
+				return "DoubleFormat[scientific, " + this.precision + "]";
+			default:
+				return "DoubleFormat[shortest]";
+		}
+	}
+
+	private static int special(ArrayTarget t, int off, String s) {
+		int n = s.length();
+		s.getChars(0, n, t.getArray(off, n), off);
+		return n;
+	}
+
+	// the value is c * 2^q, with a narrower lower gap if asym.
+	// the shortest decimal is f * 10^(k + dk), as in section 9 of the paper.
+	private int toDecimal(ArrayTarget t, int off, boolean neg, int q, long c, boolean asym, int dk) {
+		int out = (int) c & 1;
+		long cb = c << 2;
+		long cbr = cb + 2L;
+		long cbl;
+		int k;
+		if (asym) {
+			cbl = cb - 1L;
+			k = flog10threeQuartersPow2(q);
+		} else {
+			cbl = cb - 2L;
+			k = flog10pow2(q);
+		}
+		int h = q + flog2pow10(-k) + 2;
+		int gi = (k - K_MIN) << 1;
+		long g1 = G[gi];
+		long g0 = G[gi + 1];
+		long vb = rop(g1, g0, cb << h);
+		long vbl = rop(g1, g0, cbl << h);
+		long vbr = rop(g1, g0, cbr << h);
+		long s = vb >> 2;
+		if (s >= 100L) {
+			// try one digit less first
+			long sp10 = 10L * (s / 10L);
+			long tp10 = sp10 + 10L;
+			boolean upin = vbl + out <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin) {
+				long f = upin ? sp10 : tp10;
+				return chars(t, off, neg, dk == 0 ? f : f * 10L, k + dk);
+			}
+		}
+		boolean uin = vbl + out <= s << 2;
+		boolean win = (s + 1L << 2) + out <= vbr;
+		if (uin != win) {
+			return chars(t, off, neg, uin ? s : s + 1L, k + dk);
+		}
+		long cmp = vb - (s + s + 1L << 1);
+		return chars(t, off, neg, cmp < 0L || cmp == 0L && (s & 1L) == 0L ? s : s + 1L, k + dk);
+	}
+
+	// round to odd of g * cp / 2^127
+	private static long rop(long g1, long g0, long cp) {
+		long x1 = multiplyHigh(g0, cp);
+		long y0 = g1 * cp;
+		long y1 = multiplyHigh(g1, cp);
+		long z = (y0 >>> 1) + x1;
+		long vbp = y1 + (z >>> 63);
+		return vbp | (z & MASK_63) + MASK_63 >>> 63;
+	}
+
+	// Math.multiplyHigh() is not available on Java 8
+	private static long multiplyHigh(long x, long y) {
+		long x1 = x >> 32;
+		long x2 = x & 0xffffffffL;
+		long y1 = y >> 32;
+		long y2 = y & 0xffffffffL;
+		long z2 = x2 * y2;
+		long t = x1 * y2 + (z2 >>> 32);
+		long z1 = (t & 0xffffffffL) + x2 * y1;
+		return x1 * y1 + (t >> 32) + (z1 >> 32);
+	}
+
+	// floor(e * log10(2))
+	private static int flog10pow2(int e) {
+		return (int) (e * 661_971_961_083L >> 41);
+	}
+
+	// floor(e * log10(2) + log10(3/4))
+	private static int flog10threeQuartersPow2(int e) {
+		return (int) (e * 661_971_961_083L - 274_743_187_321L >> 41);
+	}
+
+	// floor(e * log2(10))
+	private static int flog2pow10(int e) {
+		return (int) (e * 913_124_641_741L >> 38);
+	}
+
+	// number of decimal digits of v > 0
+	private static int length(long v) {
+		int n = flog10pow2(64 - Long.numberOfLeadingZeros(v));
+		return v >= POW10[n] ? n + 1 : n;
+	}
+
+	// writes exactly n decimal digits of v (zero-padded) ending before end
+	private static void digits(char[] a, int end, long v, int n) {
+		int i = end;
+		int s = end - n;
+		while (v >= 100_000_000L) {
+			// peel off 8 digits at a time to stay in int arithmetic
+			long q = v / 100_000_000L;
+			int w = (int) (v - q * 100_000_000L);
+			for (int k = i - 8; i > k; i--) {
+				int r = w / 10;
+				a[i - 1] = (char) ('0' + (w - r * 10));
+				w = r;
+			}
+			v = q;
+		}
+		int w = (int) v;
+		for (; i > s; i--) {
+			int r = w / 10;
+			a[i - 1] = (char) ('0' + (w - r * 10));
+			w = r;
+		}
+	}
+
+	private static void zeros(char[] a, int off, int n) {
+		for (int i = off, end = off + n; i < end; i++) {
+			a[i] = '0';
+		}
+	}
+
+	// writes the value f * 10^e according to this format's mode
+	private int chars(ArrayTarget t, int off, boolean neg, long f, int e) {
+		int n;
+		if (f == 0L) {
+			e = 0;
+			n = 1;
+		} else {
+			// strip trailing zeros, 8, 4, 2 and 1 at a time
+			while (f % 100_000_000L == 0L) {
+				f /= 100_000_000L;
+				e += 8;
+			}
+			if (f % 10_000L == 0L) {
+				f /= 10_000L;
+				e += 4;
+			}
+			if (f % 100L == 0L) {
+				f /= 100L;
+				e += 2;
+			}
+			if (f % 10L == 0L) {
+				f /= 10L;
+				e++;
+			}
+			n = length(f);
+		}
+		switch (this.mode) {
+			case FIXED:
+				return fixedChars(t, off, neg, f, e, n);
+			case SCIENTIFIC:
+				return scientificChars(t, off, neg, f, e, n);
+			default:
+				return shortestChars(t, off, neg, f, e, n);
+		}
+	}
+
+	private static int exponentLength(int x) {
+		int a = Math.abs(x);
+		return (x < 0 ? 1 : 0) + (a >= 100 ? 3 : a >= 10 ? 2 : 1);
+	}
+
+	private static int shortestChars(ArrayTarget t, int off, boolean neg, long f, int e, int n) {
+		int sg = neg ? 1 : 0;
+		// the value is 0.d1d2...dn * 10^x
+		int x = e + n;
+		if (0 < x && x <= 7) {
+			if (n <= x) {
+				int len = sg + x + 2;
+				char[] a = t.getArray(off, len);
+				if (neg) {
+					a[off] = '-';
+				}
+				int i = off + sg;
+				digits(a, i + n, f, n);
+				zeros(a, i + n, x - n);
+				a[i + x] = '.';
+				a[i + x + 1] = '0';
+				return len;
+			}
+			int fd = n - x;
+			long p = POW10[fd];
+			int len = sg + n + 1;
+			char[] a = t.getArray(off, len);
+			if (neg) {
+				a[off] = '-';
+			}
+			int i = off + sg;
+			digits(a, i + x, f / p, x);
+			a[i + x] = '.';
+			digits(a, i + len - sg, f % p, fd);
+			return len;
+		}
+		if (-3 < x && x <= 0) {
+			int len = sg + 2 - x + n;
+			char[] a = t.getArray(off, len);
+			if (neg) {
+				a[off] = '-';
+			}
+			int i = off + sg;
+			a[i] = '0';
+			a[i + 1] = '.';
+			zeros(a, i + 2, -x);
+			digits(a, i + len - sg, f, n);
+			return len;
+		}
+		int ex = x - 1;
+		int rest = Math.max(n - 1, 1);
+		int len = sg + 2 + rest + 1 + exponentLength(ex);
+		char[] a = t.getArray(off, len);
+		if (neg) {
+			a[off] = '-';
+		}
+		int i = off + sg;
+		long p = POW10[n - 1];
+		a[i] = (char) ('0' + (int) (f / p));
+		a[i + 1] = '.';
+		digits(a, i + 2 + rest, f % p, rest);
+		writeExponent(a, i + 2 + rest, ex);
+		return len;
+	}
+
+	private int fixedChars(ArrayTarget t, int off, boolean neg, long f, int e, int n) {
+		int p = this.precision;
+		// the value is rounded to F * 10^z / 10^p
+		int z = e + p;
+		long F = f;
+		if (z < 0) {
+			int d = -z;
+			z = 0;
+			if (d > n) {
+				F = 0L;
+			} else {
+				long pw = POW10[d];
+				F = f / pw;
+				if ((f - F * pw) << 1 >= pw) {
+					F++;
+				}
+			}
+		}
+		if (F == 0L) {
+			z = 0;
+		}
+		int nF = F == 0L ? 0 : length(F);
+		// the lowest min(z, p) fraction digits are zeros, the others come from F
+		int fz = Math.min(z, p);
+		int fd = p - fz;
+		int iz = z - fz;
+		long fi, ff;
+		if (fd >= nF) {
+			fi = 0L;
+			ff = F;
+		} else {
+			long pw = POW10[fd];
+			fi = F / pw;
+			ff = F - fi * pw;
+		}
+		int il = fi == 0L ? 1 : length(fi) + iz;
+		int sg = neg ? 1 : 0;
+		int len = sg + il + (p > 0 ? p + 1 : 0);
+		char[] a = t.getArray(off, len);
+		if (neg) {
+			a[off] = '-';
+		}
+		int i = off + sg;
+		if (fi == 0L) {
+			a[i] = '0';
+		} else {
+			digits(a, i + il - iz, fi, il - iz);
+			zeros(a, i + il - iz, iz);
+		}
+		if (p > 0) {
+			i += il;
+			a[i++] = '.';
+			digits(a, i + fd, ff, fd);
+			zeros(a, i + fd, fz);
+		}
+		return len;
+	}
+
+	private int scientificChars(ArrayTarget t, int off, boolean neg, long f, int e, int n) {
+		int p = this.precision;
+		int sd = p + 1;
+		int ex = e + n - 1;
+		long F = f;
+		int nF = n;
+		if (n > sd) {
+			long pw = POW10[n - sd];
+			F = f / pw;
+			if ((f - F * pw) << 1 >= pw) {
+				F++;
+				if (F == POW10[sd]) {
+					F = POW10[p];
+					ex++;
+				}
+			}
+			nF = sd;
+		}
+		int sg = neg ? 1 : 0;
+		int len = sg + 1 + (p > 0 ? p + 1 : 0) + 1 + exponentLength(ex);
+		char[] a = t.getArray(off, len);
+		if (neg) {
+			a[off] = '-';
+		}
+		int i = off + sg;
+		long pw = POW10[nF - 1];
+		a[i++] = (char) ('0' + (int) (F / pw));
+		if (p > 0) {
+			a[i++] = '.';
+			digits(a, i + nF - 1, F % pw, nF - 1);
+			zeros(a, i + nF - 1, p - (nF - 1));
+			i += p;
+		}
+		writeExponent(a, i, ex);
+		return len;
+	}
+
+	private static void writeExponent(char[] a, int i, int x) {
+		a[i++] = 'E';
+		if (x < 0) {
+			a[i++] = '-';
+			x = -x;
+		}
+		digits(a, i + (x >= 100 ? 3 : x >= 10 ? 2 : 1), x, x >= 100 ? 3 : x >= 10 ? 2 : 1);
+	}
+}
@@ -12,6 +12,13 @@ package org.bitsandpieces.util;
  * having to rely of the cumbersome and over-designed java.nio.ByteBuffer
  * solution. Under normal circumstances, using an Endian for byte conversion is
  * expected to be much more efficient than any type of manual conversion.
+ * <p>
+ * The static {@code VarLong} methods convert between {@code long}s and
+ * unsigned LEB128 varints, which store seven bits per {@code byte}, least
+ * significant group first, with the high bit of every {@code byte} but the
+ * last one set. Varints have no byte order, and take between {@code 1} and
+ * {@code 10} {@code byte}s. Signed values should be mapped with
+ * {@link #zigZag(long)} first, so that small negative values remain short.
  *
  * @author Jan Kebernik
  */
@@ -430,6 +437,312 @@ public enum Endian {
 		return doGetDouble(buf, off);
 	}
 
+	/**
+	 * Returns the number of {@code byte}s needed to encode the specified
+	 * {@code long} as an unsigned varint.
+	 *
+	 * @param n the {@code long} to be encoded.
+	 * @return the number of {@code byte}s needed to encode the specified
+	 * {@code long}, between {@code 1} and {@code 10}.
+	 */
+	public static int varLongLength(long n) {
+		return (70 - Long.numberOfLeadingZeros(n | 1L)) / 7;
+	}
+
+	/**
+	 * Writes the specified {@code long} as an unsigned varint to the specified
+	 * byte-array, starting at the specified offset.
+	 *
+	 * @param n the {@code long} to be written.
+	 * @param buf the byte-array into which to write.
+	 * @param off the offset into the byte-array at which to start writing.
+	 * @return the number of {@code byte}s written.
+	 * @throws ArrayIndexOutOfBoundsException if the specified offset is
+	 * negative or if less than {@link #varLongLength(long) varLongLength(n)}
+	 * {@code byte}s are available for writing at the specified offset. No
+	 * {@code byte}s are written in such cases.
+	 */
+	public static int putVarLong(long n, byte[] buf, int off) {
+		if (off < 0 || off > buf.length - varLongLength(n)) {
+			throw new ArrayIndexOutOfBoundsException(off);
+		}
+		return doPutVarLong(n, buf, off);
+	}
+
+	private static int doPutVarLong(long n, byte[] buf, int off) {
+		int i = off;
+		while ((n & ~0x7fL) != 0L) {
+			buf[i++] = (byte) (n | 0x80L);
+			n >>>= 7;
+		}
+		buf[i++] = (byte) n;
+		return i - off;
+	}
+
+	/**
+	 * Writes the first {@code n} {@code long}s of the specified array as
+	 * consecutive unsigned varints to the specified byte-array, starting at
+	 * the specified offset.
+	 *
+	 * @param src the array holding the {@code long}s to be written.
+	 * @param n the number of {@code long}s to be written.
+	 * @param buf the byte-array into which to write.
+	 * @param off the offset into the byte-array at which to start writing.
+	 * @return the number of {@code byte}s written.
+	 * @throws ArrayIndexOutOfBoundsException if {@code n} is negative or
+	 * larger than {@code src.length}, if the specified offset is negative or
+	 * if not enough {@code byte}s are available for writing at the specified
+	 * offset. No {@code byte}s are written in such cases.
+	 */
+	public static int encodeVarLongs(long[] src, int n, byte[] buf, int off) {
+		if (n < 0 || n > src.length) {
+			throw new ArrayIndexOutOfBoundsException(n);
+		}
+		if (off < 0 || off > buf.length) {
+			throw new ArrayIndexOutOfBoundsException(off);
+		}
+		long total = 0L;
+		for (int k = 0; k < n; k++) {
+			total += varLongLength(src[k]);
+		}
+		if (total > buf.length - off) {
+			throw new ArrayIndexOutOfBoundsException(off);
+		}
+		int i = off;
+		for (int k = 0; k < n; k++) {
+			long v = src[k];
+			if ((v & ~0x7fL) == 0L) {
+				buf[i++] = (byte) v;
+			} else {
+				i += doPutVarLong(v, buf, i);
+			}
+		}
+		return i - off;
+	}
+
+	/**
+	 * Converts an unsigned varint from the specified byte-array to a
+	 * {@code long}, starting at the specified offset. Use
+	 * {@link #decodeVarLongs(byte[], int, long[], int)} to read consecutive
+	 * varints, which also reports the number of {@code byte}s consumed.
+	 *
+	 * @param buf the byte-array from which to read {@code byte}s.
+	 * @param off the offset into the byte-array at which to start reading.
+	 * @return the {@code long} represented by the varint.
+	 * @throws ArrayIndexOutOfBoundsException if the specified offset is
+	 * negative or if the varint extends past the end of the byte-array.
+	 * @throws IllegalArgumentException if the varint is longer than
+	 * {@code 10} {@code byte}s.
+	 */
+	public static long getVarLong(byte[] buf, int off) {
+		if (off < 0 || off >= buf.length) {
+			throw new ArrayIndexOutOfBoundsException(off);
+		}
+		byte b = buf[off];
+		if (b >= 0) {
+			return b;
+		}
+		if (off <= buf.length - 8) {
+			long x = INSTANCE.getLongLE(buf, off);
+			long c = ~x & 0x8080808080808080L;
+			if (c != 0L) {
+				return varLong(x, c);
+			}
+		}
+		long v = 0L;
+		int i = off;
+		for (int shift = 0;; shift += 7) {
+			if (i == buf.length) {
+				throw new ArrayIndexOutOfBoundsException(i);
+			}
+			if (shift == 70) {
+				throw new IllegalArgumentException("Malformed varint at offset: " + off);
+			}
+			b = buf[i++];
+			v |= (b & 0x7fL) << shift;
+			if (b >= 0) {
+				return v;
+			}
+		}
+	}
+
+	/**
+	 * Converts {@code n} consecutive unsigned varints from the specified
+	 * byte-array to {@code long}s, starting at the specified offset, and
+	 * stores them in the first {@code n} elements of the specified array.
+	 *
+	 * @param buf the byte-array from which to read {@code byte}s.
+	 * @param off the offset into the byte-array at which to start reading.
+	 * @param dst the array into which to store the {@code long}s.
+	 * @param n the number of varints to read.
+	 * @return the number of {@code byte}s read.
+	 * @throws ArrayIndexOutOfBoundsException if {@code n} is negative or
+	 * larger than {@code dst.length}, if the specified offset is negative or
+	 * if the varints extend past the end of the byte-array. Some elements of
+	 * {@code dst} may have been overwritten in the latter case.
+	 * @throws IllegalArgumentException if a varint is longer than {@code 10}
+	 * {@code byte}s. Some elements of {@code dst} may have been overwritten in
+	 * such cases.
+	 */
+	public static int decodeVarLongs(byte[] buf, int off, long[] dst, int n) {
+		if (n < 0 || n > dst.length) {
+			throw new ArrayIndexOutOfBoundsException(n);
+		}
+		if (off < 0 || off > buf.length) {
+			throw new ArrayIndexOutOfBoundsException(off);
+		}
+		FastBytes fb = INSTANCE;
+		int i = off;
+		int k = 0;
+		// any varint starting here is complete or malformed within the array
+		for (int safe = buf.length - 10; k < n && i <= safe; k++) {
+			long x = fb.getLongLE(buf, i);
+			long c = ~x & 0x8080808080808080L;
+			if (c == 0x8080808080808080L && k <= n - 8) {
+				// 8 single-byte varints, common in dense delta-encoded data
+				dst[k] = x & 0x7fL;
+				dst[k + 1] = (x >>> 8) & 0x7fL;
+				dst[k + 2] = (x >>> 16) & 0x7fL;
+				dst[k + 3] = (x >>> 24) & 0x7fL;
+				dst[k + 4] = (x >>> 32) & 0x7fL;
+				dst[k + 5] = (x >>> 40) & 0x7fL;
+				dst[k + 6] = (x >>> 48) & 0x7fL;
+				dst[k + 7] = x >>> 56;
+				k += 7;
+				i += 8;
+				continue;
+			}
+			if (c != 0L) {
+				dst[k] = varLong(x, c);
+				i += (Long.numberOfTrailingZeros(c) + 1) >>> 3;
+				continue;
+			}
+			// 9 or 10 bytes
+			long v = varLong(x, 0L) | ((buf[i + 8] & 0x7fL) << 56);
+			byte b = buf[i + 8];
+			if (b >= 0) {
+				i += 9;
+			} else {
+				b = buf[i + 9];
+				if (b < 0) {
+					throw new IllegalArgumentException("Malformed varint at offset: " + i);
+				}
+				v |= (long) b << 63;
+				i += 10;
+			}
+			dst[k] = v;
+		}
+		for (; k < n; k++) {
+			long v = 0L;
+			int start = i;
+			for (int shift = 0;; shift += 7) {
+				if (i == buf.length) {
+					throw new ArrayIndexOutOfBoundsException(i);
+				}
+				if (shift == 70) {
+					throw new IllegalArgumentException("Malformed varint at offset: " + start);
+				}
+				byte b = buf[i++];
+				v |= (b & 0x7fL) << shift;
+				if (b >= 0) {
+					break;
+				}
+			}
+			dst[k] = v;
+		}
+		return i - off;
+	}
+
+	/**
+	 * Converts the unsigned varint at the start of the specified {@code long}
+	 * to a {@code long}. The {@code long} holds eight consecutive
+	 * {@code byte}s in {@link #LITTLE Little-Endian} byte order, i.e. the
+	 * first {@code byte} of the varint is its lowest {@code byte}. This allows
+	 * callers that load eight {@code byte}s at once, for example from a
+	 * buffer, to decode varints without a byte-at-a-time loop.
+	 *
+	 * @param word eight {@code byte}s starting with a varint.
+	 * @return the {@code long} represented by the varint, or the lowest
+	 * {@code 56} bits of it, if the varint is longer than eight
+	 * {@code byte}s.
+	 * @see #getVarLongLength(long)
+	 */
+	public static long getVarLong(long word) {
+		return varLong(word, ~word & 0x8080808080808080L);
+	}
+
+	/**
+	 * Returns the number of {@code byte}s taken by the unsigned varint at the
+	 * start of the specified {@code long}, which holds eight consecutive
+	 * {@code byte}s in {@link #LITTLE Little-Endian} byte order.
+	 *
+	 * @param word eight {@code byte}s starting with a varint.
+	 * @return the number of {@code byte}s taken by the varint, between
+	 * {@code 1} and {@code 8}, or {@code 0} if it is longer than eight
+	 * {@code byte}s.
+	 * @see #getVarLong(long)
+	 */
+	public static int getVarLongLength(long word) {
+		long c = ~word & 0x8080808080808080L;
+		return c == 0L ? 0 : (Long.numberOfTrailingZeros(c) + 1) >>> 3;
+	}
+
+	// x holds 8 bytes starting with a varint, c the clear continuation bits
+	// of x. only the lowest bit in c matters: it marks the varint's last byte.
+	// if c is 0, all 8 bytes belong to the varint.
+	private static long varLong(long x, long c) {
+		// drop the bytes after the varint and the continuation bits
+		x &= (c ^ (c - 1L)) & 0x7f7f7f7f7f7f7f7fL;
+		// squeeze out the gaps: 7-bit groups into 14, 28 and finally 56 bits
+		x = (x & 0x007f007f007f007fL) | ((x & 0x7f007f007f007f00L) >>> 1);
+		x = (x & 0x00003fff00003fffL) | ((x & 0x3fff00003fff0000L) >>> 2);
+		return (x & 0x000000000fffffffL) | ((x & 0x0fffffff00000000L) >>> 4);
+	}
+
+	/**
+	 * Maps the specified signed {@code long} to an unsigned one, such that
+	 * values of small magnitude map to small values: {@code 0, -1, 1, -2, 2}
+	 * map to {@code 0, 1, 2, 3, 4} and so on.
+	 *
+	 * @param n the signed {@code long}.
+	 * @return the ZigZag-encoded {@code long}.
+	 */
+	public static long zigZag(long n) {
+		return (n << 1) ^ (n >> 63);
+	}
+
+	/**
+	 * Reverses {@link #zigZag(long)}.
+	 *
+	 * @param n the ZigZag-encoded {@code long}.
+	 * @return the signed {@code long}.
+	 */
+	public static long unZigZag(long n) {
+		return (n >>> 1) ^ -(n & 1L);
+	}
+
+	/**
+	 * Maps the specified signed {@code int} to an unsigned one, such that
+	 * values of small magnitude map to small values: {@code 0, -1, 1, -2, 2}
+	 * map to {@code 0, 1, 2, 3, 4} and so on.
+	 *
+	 * @param n the signed {@code int}.
+	 * @return the ZigZag-encoded {@code int}.
+	 */
+	public static int zigZag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	/**
+	 * Reverses {@link #zigZag(int)}.
+	 *
+	 * @param n the ZigZag-encoded {@code int}.
+	 * @return the signed {@code int}.
+	 */
+	public static int unZigZag(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+
 	/**
 	 * Converts the specified {@code byte}s to a {@code char}.
 	 *
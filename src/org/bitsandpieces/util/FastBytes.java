@@ -27,17 +27,20 @@ abstract class FastBytes {
 
 	private static final sun.misc.Unsafe UNSAFE;
 	private static final long BYTE_ARRAY_BASE_OFFSET;
+	private static final long CHAR_ARRAY_BASE_OFFSET;
 	static final FastBytes INSTANCE;
 	static {
 		FastBytes bytes = null;
 		sun.misc.Unsafe u = null;
 		long byteOff = 0;
+		long charOff = 0;
 		try {
 			// get new instance via constructor instead of relying on named field (better compatibility with various runtimes).
 			Constructor<sun.misc.Unsafe> con = sun.misc.Unsafe.class.getDeclaredConstructor();
 			con.setAccessible(true);
 			u = con.newInstance();
 			byteOff = u.arrayBaseOffset(byte[].class);
+			charOff = u.arrayBaseOffset(char[].class);
 			// determine byte order used by Unsafe, in case it even matters (unsure)
 			byte[] testArray = {
 				(byte) 0x88, (byte) 0x77, (byte) 0x66, (byte) 0x55,
@@ -61,6 +64,7 @@ abstract class FastBytes {
 		INSTANCE = bytes != null ? bytes : new BytesSafe();
 		UNSAFE = u;
 		BYTE_ARRAY_BASE_OFFSET = byteOff;
+		CHAR_ARRAY_BASE_OFFSET = charOff;
 	}
 
 	private FastBytes() {
@@ -92,6 +96,9 @@ abstract class FastBytes {
 		return Double.longBitsToDouble(getLongBE(b, off));
 	}
 
+	// reads 4 chars at once. the char at "off" ends up in the lowest 16 bits.
+	abstract long getLongLE(char[] c, int off);
+
 	abstract void putCharLE(char n, byte[] b, int off);
 	abstract void putCharBE(char n, byte[] b, int off);
 
@@ -128,6 +135,71 @@ abstract class FastBytes {
 	// fills the specified array range with the specified byte value
 	abstract void fill(byte[] a, int off, int len, byte n);
 
+	// returns the number of leading ASCII bytes (0..len) in the specified
+	// array range, testing the high bits of 8 bytes at a time.
+	final int asciiLength(byte[] a, int off, int len) {
+		int i = 0;
+		for (int m = len - 7; i < m; i += 8) {
+			long n = getLongLE(a, off + i) & 0x8080808080808080L;
+			if (n != 0L) {
+				// lowest set bit belongs to the first non-ASCII byte
+				return i + (Long.numberOfTrailingZeros(n) >>> 3);
+			}
+		}
+		for (; i < len; i++) {
+			if (a[off + i] < 0) {
+				return i;
+			}
+		}
+		return len;
+	}
+
+	// returns the number of leading bytes (0..len) in the specified array
+	// range that are neither '\r' nor '\n', testing 8 bytes at a time.
+	final int lineLength(byte[] a, int off, int len) {
+		int i = 0;
+		for (int m = len - 7; i < m; i += 8) {
+			long x = getLongLE(a, off + i);
+			long lf = x ^ 0x0a0a0a0a0a0a0a0aL;
+			long cr = x ^ 0x0d0d0d0d0d0d0d0dL;
+			// high bit set for zero bytes. exact for the lowest one.
+			long n = (((lf - 0x0101010101010101L) & ~lf) | ((cr - 0x0101010101010101L) & ~cr)) & 0x8080808080808080L;
+			if (n != 0L) {
+				return i + (Long.numberOfTrailingZeros(n) >>> 3);
+			}
+		}
+		for (; i < len; i++) {
+			byte b = a[off + i];
+			if (b == '\n' || b == '\r') {
+				return i;
+			}
+		}
+		return len;
+	}
+
+	// returns the number of leading chars (0..len) in the specified array
+	// range that are neither '\r' nor '\n', testing 4 chars at a time.
+	final int lineLength(char[] a, int off, int len) {
+		int i = 0;
+		for (int m = len - 3; i < m; i += 4) {
+			long x = getLongLE(a, off + i);
+			long lf = x ^ 0x000a000a000a000aL;
+			long cr = x ^ 0x000d000d000d000dL;
+			// high bit set for zero chars. exact for the lowest one.
+			long n = (((lf - 0x0001000100010001L) & ~lf) | ((cr - 0x0001000100010001L) & ~cr)) & 0x8000800080008000L;
+			if (n != 0L) {
+				return i + (Long.numberOfTrailingZeros(n) >>> 4);
+			}
+		}
+		for (; i < len; i++) {
+			char c = a[off + i];
+			if (c == '\n' || c == '\r') {
+				return i;
+			}
+		}
+		return len;
+	}
+
 	private static abstract class BytesUnsafe extends FastBytes {
 
 		// returns the number of matching leading bytes, where leading
@@ -304,6 +376,13 @@ abstract class FastBytes {
 					| (b[off + 7] & 0xffL);
 		}
 		@Override
+		long getLongLE(char[] c, int off) {
+			return ((long) c[off + 3] << 48)
+					| ((long) c[off + 2] << 32)
+					| ((long) c[off + 1] << 16)
+					| c[off + 0];
+		}
+		@Override
 		void putCharLE(char n, byte[] b, int off) {
 			b[off + 0] = (byte) (n);
 			b[off + 1] = (byte) (n >>> 8);
@@ -410,6 +489,10 @@ abstract class FastBytes {
 			return UNSAFE.getDouble(b, BYTE_ARRAY_BASE_OFFSET + off);
 		}
 		@Override
+		long getLongLE(char[] c, int off) {
+			return UNSAFE.getLong(c, CHAR_ARRAY_BASE_OFFSET + ((long) off << 1));
+		}
+		@Override
 		void putCharLE(char n, byte[] b, int off) {
 			UNSAFE.putChar(b, BYTE_ARRAY_BASE_OFFSET + off, n);
 		}
@@ -493,6 +576,13 @@ abstract class FastBytes {
 			return Long.reverseBytes(getLongBE(b, off));
 		}
 		@Override
+		long getLongLE(char[] c, int off) {
+			// swap chars, but not their bytes
+			long n = UNSAFE.getLong(c, CHAR_ARRAY_BASE_OFFSET + ((long) off << 1));
+			n = (n << 32) | (n >>> 32);
+			return ((n & 0x0000ffff0000ffffL) << 16) | ((n >>> 16) & 0x0000ffff0000ffffL);
+		}
+		@Override
 		void putCharLE(char n, byte[] b, int off) {
 			putCharBE(Character.reverseBytes(n), b, off);
 		}
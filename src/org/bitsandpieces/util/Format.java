@@ -32,6 +32,22 @@ package org.bitsandpieces.util;
  * ({@link #BIN binary}, {@link #OCT octal}, {@link #DEC decimal} and
  * {@link #HEX hexadecimal}). {@code Format}s with arbitrary alphabets can be
  * created using {@link #get(String) get()}.
+ * </p><p>
+ * The {@code parseInt} and {@code parseLong} methods reverse the conversion.
+ * They accept exactly the output of the respective {@code toString} method,
+ * except that leading zeros are optional and that the infix, if any, may occur
+ * between any two digits. The sign, prefix and suffix settings must match.
+ * Unsigned {@code Format}s parse the full unsigned range of the type, which is
+ * returned in two's complement. Decimal and hexadecimal alphabets are parsed 8
+ * digits at a time from arrays.
+ * </p><p>
+ * {@code Format}s whose alphabet has a power-of-two size {@code 2^b} (such as
+ * {@link #HEX}, or base-32 and base-64 alphabets obtained through
+ * {@link #get(String) get()}) can also {@code encode} arbitrary {@code byte}s
+ * as text and {@code decode} them again, as in RFC 4648: every {@code b} bits
+ * of input become one letter, and a final partial group is padded with zero
+ * bits. No padding letters are produced or accepted, and the sign, prefix,
+ * infix and suffix settings are ignored.
  * </p>
  *
  * @author Jan Kebernik
@@ -232,6 +248,288 @@ public interface Format {
 	 */
 	String toString(long l);
 
+	/**
+	 * Parses the specified {@code CharSequence} as an {@code int}.
+	 *
+	 * @param s the {@code CharSequence} to parse.
+	 * @return the parsed value.
+	 * @throws NumberFormatException if the {@code CharSequence} does not hold
+	 * a valid {@code int} as produced by {@link #toString(int) toString(int)}.
+	 */
+	default int parseInt(CharSequence s) {
+		return (int) Formats.parser(this).parse(s, 0, s.length(), false);
+	}
+
+	/**
+	 * Parses the specified range of the {@code CharSequence} as an {@code int}.
+	 *
+	 * @param s the {@code CharSequence} to parse.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the parsed value.
+	 * @throws NumberFormatException if the range does not hold a valid
+	 * {@code int} as produced by {@link #toString(int) toString(int)}.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	default int parseInt(CharSequence s, int off, int len) {
+		return (int) Formats.parser(this).parse(s, off, len, false);
+	}
+
+	/**
+	 * Parses the specified range of the array as an {@code int}.
+	 *
+	 * @param a the array to parse.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the parsed value.
+	 * @throws NumberFormatException if the range does not hold a valid
+	 * {@code int} as produced by {@link #toString(int) toString(int)}.
+	 * @throws ArrayIndexOutOfBoundsException if the range is out of bounds.
+	 */
+	default int parseInt(char[] a, int off, int len) {
+		return (int) Formats.parser(this).parse(a, off, len, false);
+	}
+
+	/**
+	 * Parses the specified range of the array as an {@code int}. Each
+	 * {@code byte} is interpreted as an ISO-8859-1 (Latin-1) {@code char}.
+	 *
+	 * @param a the array to parse.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the parsed value.
+	 * @throws NumberFormatException if the range does not hold a valid
+	 * {@code int} as produced by {@link #toString(int) toString(int)}.
+	 * @throws ArrayIndexOutOfBoundsException if the range is out of bounds.
+	 */
+	default int parseInt(byte[] a, int off, int len) {
+		return (int) Formats.parser(this).parse(a, off, len, false);
+	}
+
+	/**
+	 * Parses the specified {@code CharSequence} as a {@code long}.
+	 *
+	 * @param s the {@code CharSequence} to parse.
+	 * @return the parsed value.
+	 * @throws NumberFormatException if the {@code CharSequence} does not hold
+	 * a valid {@code long} as produced by {@link #toString(long) toString(long)}.
+	 */
+	default long parseLong(CharSequence s) {
+		return Formats.parser(this).parse(s, 0, s.length(), true);
+	}
+
+	/**
+	 * Parses the specified range of the {@code CharSequence} as a {@code long}.
+	 *
+	 * @param s the {@code CharSequence} to parse.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the parsed value.
+	 * @throws NumberFormatException if the range does not hold a valid
+	 * {@code long} as produced by {@link #toString(long) toString(long)}.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	default long parseLong(CharSequence s, int off, int len) {
+		return Formats.parser(this).parse(s, off, len, true);
+	}
+
+	/**
+	 * Parses the specified range of the array as a {@code long}.
+	 *
+	 * @param a the array to parse.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the parsed value.
+	 * @throws NumberFormatException if the range does not hold a valid
+	 * {@code long} as produced by {@link #toString(long) toString(long)}.
+	 * @throws ArrayIndexOutOfBoundsException if the range is out of bounds.
+	 */
+	default long parseLong(char[] a, int off, int len) {
+		return Formats.parser(this).parse(a, off, len, true);
+	}
+
+	/**
+	 * Parses the specified range of the array as a {@code long}. Each
+	 * {@code byte} is interpreted as an ISO-8859-1 (Latin-1) {@code char}.
+	 *
+	 * @param a the array to parse.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the parsed value.
+	 * @throws NumberFormatException if the range does not hold a valid
+	 * {@code long} as produced by {@link #toString(long) toString(long)}.
+	 * @throws ArrayIndexOutOfBoundsException if the range is out of bounds.
+	 */
+	default long parseLong(byte[] a, int off, int len) {
+		return Formats.parser(this).parse(a, off, len, true);
+	}
+
+	/**
+	 * Returns the number of letters {@code encode} produces for the specified
+	 * number of {@code byte}s.
+	 *
+	 * @param numBytes the number of {@code byte}s to encode.
+	 * @return the number of letters produced.
+	 * @throws IllegalArgumentException if {@code numBytes} is negative.
+	 * @throws IllegalStateException if the size of this {@code Format}'s
+	 * alphabet is not a power of two.
+	 */
+	default long encodedLength(long numBytes) {
+		return Formats.codec(this).encodedLength(numBytes);
+	}
+
+	/**
+	 * Returns the number of {@code byte}s {@code decode} produces for the
+	 * specified number of letters.
+	 *
+	 * @param numChars the number of letters to decode.
+	 * @return the number of {@code byte}s produced.
+	 * @throws IllegalArgumentException if {@code numChars} is negative or not
+	 * a length produced by {@code encode}.
+	 * @throws IllegalStateException if the size of this {@code Format}'s
+	 * alphabet is not a power of two.
+	 */
+	default long decodedLength(long numChars) {
+		return Formats.codec(this).decodedLength(numChars);
+	}
+
+	/**
+	 * Encodes the specified range of {@code byte}s into the specified char
+	 * array.
+	 *
+	 * @param src the {@code byte}s to encode.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @param dst the array into which to copy the letters.
+	 * @param dstOff the offset to which to copy the letters.
+	 * @return the number of letters copied, which is
+	 * {@link #encodedLength(long) encodedLength(len)}.
+	 * @throws IndexOutOfBoundsException if either range is out of bounds.
+	 * @throws IllegalStateException if the size of this {@code Format}'s
+	 * alphabet is not a power of two.
+	 */
+	default int encode(byte[] src, int off, int len, char[] dst, int dstOff) {
+		return Formats.codec(this).encode(src, off, len, dst, dstOff);
+	}
+
+	/**
+	 * Encodes the specified range of {@code byte}s into the specified byte
+	 * array, one ISO-8859-1 (Latin-1) {@code byte} per letter.
+	 *
+	 * @param src the {@code byte}s to encode.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @param dst the array into which to copy the letters.
+	 * @param dstOff the offset to which to copy the letters.
+	 * @return the number of letters copied, which is
+	 * {@link #encodedLength(long) encodedLength(len)}.
+	 * @throws IndexOutOfBoundsException if either range is out of bounds.
+	 * @throws IllegalStateException if the alphabet contains chars above
+	 * {@code '\u00FF'}, or if the size of this {@code Format}'s alphabet is
+	 * not a power of two.
+	 */
+	default int encode(byte[] src, int off, int len, byte[] dst, int dstOff) {
+		return Formats.codec(this).encode(src, off, len, dst, dstOff);
+	}
+
+	/**
+	 * Returns a new {@code String} encoding the specified {@code byte}s.
+	 *
+	 * @param src the {@code byte}s to encode.
+	 * @return a new {@code String} encoding the specified {@code byte}s.
+	 * @throws IllegalStateException if the size of this {@code Format}'s
+	 * alphabet is not a power of two.
+	 */
+	default String encode(byte[] src) {
+		FormatCodec c = Formats.codec(this);
+		char[] a = new char[(int) c.encodedLength(src.length)];
+		c.encode(src, 0, src.length, a, 0);
+		return Strings.newString(a);
+	}
+
+	/**
+	 * Decodes the specified range of letters into the specified byte array.
+	 *
+	 * @param src the letters to decode.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @param dst the array into which to copy the {@code byte}s.
+	 * @param dstOff the offset to which to copy the {@code byte}s.
+	 * @return the number of {@code byte}s copied, which is
+	 * {@link #decodedLength(long) decodedLength(len)}.
+	 * @throws IllegalArgumentException if the range contains a char outside
+	 * of the alphabet, has an illegal length or ends in non-zero padding
+	 * bits.
+	 * @throws IndexOutOfBoundsException if either range is out of bounds.
+	 * @throws IllegalStateException if the size of this {@code Format}'s
+	 * alphabet is not a power of two.
+	 */
+	default int decode(char[] src, int off, int len, byte[] dst, int dstOff) {
+		return Formats.codec(this).decode(src, off, len, dst, dstOff);
+	}
+
+	/**
+	 * Decodes the specified range of ISO-8859-1 (Latin-1) letters into the
+	 * specified byte array.
+	 *
+	 * @param src the letters to decode.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @param dst the array into which to copy the {@code byte}s.
+	 * @param dstOff the offset to which to copy the {@code byte}s.
+	 * @return the number of {@code byte}s copied, which is
+	 * {@link #decodedLength(long) decodedLength(len)}.
+	 * @throws IllegalArgumentException if the range contains a char outside
+	 * of the alphabet, has an illegal length or ends in non-zero padding
+	 * bits.
+	 * @throws IndexOutOfBoundsException if either range is out of bounds.
+	 * @throws IllegalStateException if the size of this {@code Format}'s
+	 * alphabet is not a power of two.
+	 */
+	default int decode(byte[] src, int off, int len, byte[] dst, int dstOff) {
+		return Formats.codec(this).decode(src, off, len, dst, dstOff);
+	}
+
+	/**
+	 * Decodes the specified range of letters into the specified byte array.
+	 *
+	 * @param src the letters to decode.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @param dst the array into which to copy the {@code byte}s.
+	 * @param dstOff the offset to which to copy the {@code byte}s.
+	 * @return the number of {@code byte}s copied, which is
+	 * {@link #decodedLength(long) decodedLength(len)}.
+	 * @throws IllegalArgumentException if the range contains a char outside
+	 * of the alphabet, has an illegal length or ends in non-zero padding
+	 * bits.
+	 * @throws IndexOutOfBoundsException if either range is out of bounds.
+	 * @throws IllegalStateException if the size of this {@code Format}'s
+	 * alphabet is not a power of two.
+	 */
+	default int decode(CharSequence src, int off, int len, byte[] dst, int dstOff) {
+		return Formats.codec(this).decode(src, off, len, dst, dstOff);
+	}
+
+	/**
+	 * Returns a new byte array holding the decoded letters.
+	 *
+	 * @param src the letters to decode.
+	 * @return a new byte array holding the decoded letters.
+	 * @throws IllegalArgumentException if {@code src} contains a char outside
+	 * of the alphabet, has an illegal length or ends in non-zero padding
+	 * bits.
+	 * @throws IllegalStateException if the size of this {@code Format}'s
+	 * alphabet is not a power of two.
+	 */
+	default byte[] decode(CharSequence src) {
+		FormatCodec c = Formats.codec(this);
+		int n = src.length();
+		byte[] b = new byte[(int) c.decodedLength(n)];
+		c.decode(src, 0, n, b, 0);
+		return b;
+	}
+
 	/**
 	 * Return the alphabet used by this {@code Format}.
 	 *
@@ -0,0 +1,474 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.bitsandpieces.util;
+
+/**
+ * Encodes binary data as text in the alphabet of a {@code Format}, and back.
+ * The alphabet must have a power-of-two size of {@code 2^b}; the input is
+ * treated as a big-endian bit stream which is cut into groups of {@code b}
+ * bits, each of which becomes one letter, as in RFC 4648. A final partial
+ * group is padded with zero bits. No padding letters are produced or
+ * accepted. Instances are immutable and hold the look-up tables for the
+ * alphabet.
+ * <p>
+ * Hexadecimal alphabets are encoded 8 bytes at a time using a table holding
+ * both letters of every byte, 64-letter alphabets 6 bytes at a time using a
+ * table holding both letters of every 12 bits. Decoding combines 8 letters
+ * into {@code b} bytes and validates them once per group, by or-ing together
+ * their table entries, which are negative for letters outside the alphabet.
+ *
+ * @author Jan Kebernik
+ */
+final class FormatCodec {
+
+	private final String alphabet;
+	private final char[] letters;
+	private final int bits;
+	private final int mask;
+	// letter values of chars below 256, or -1
+	private final int[] table;
+	// true if a letter is not Latin-1
+	private final boolean wide;
+	// both letters of every byte (hex) or every 12 bits (64 letters), first letter in the high half
+	private final int[] pairs;
+
+	FormatCodec(String alphabet) {
+		int r = alphabet.length();
+		if (Integer.bitCount(r) != 1) {
+			throw new IllegalStateException("Alphabet size is not a power of two: " + r);
+		}
+		char[] l = alphabet.toCharArray();
+		int b = Integer.numberOfTrailingZeros(r);
+		int[] t = ArrayUtil.fill(new int[256], -1);
+		boolean w = false;
+		for (int i = r - 1; i >= 0; i--) {
+			char c = l[i];
+			if (c < 256) {
+				t[c] = i;	// first occurrence wins
+			} else {
+				w = true;
+			}
+		}
+		int[] p = null;
+		if (b == 4 || b == 6) {
+			p = new int[1 << (b << 1)];
+			for (int i = 0; i < p.length; i++) {
+				p[i] = l[i >>> b] << 16 | l[i & (r - 1)];
+			}
+		}
+		this.alphabet = alphabet;
+		this.letters = l;
+		this.bits = b;
+		this.mask = r - 1;
+		this.table = t;
+		this.wide = w;
+		this.pairs = p;
+	}
+
+	long encodedLength(long numBytes) {
+		if (numBytes < 0L) {
+			throw new IllegalArgumentException("numBytes < 0: " + numBytes);
+		}
+		int b = this.bits;
+		// no overflow for any realistic length, as numBytes * 8 < 2^63 for numBytes < 2^60
+		return (numBytes * 8L + b - 1) / b;
+	}
+
+	long decodedLength(long numChars) {
+		if (numChars < 0L) {
+			throw new IllegalArgumentException("numChars < 0: " + numChars);
+		}
+		int b = this.bits;
+		long n = numChars / 8L * b + (numChars % 8L) * b / 8;
+		if (encodedLength(n) != numChars) {
+			throw new IllegalArgumentException("Illegal length of encoded input: " + numChars);
+		}
+		return n;
+	}
+
+	private void checkLatin1() {
+		if (this.wide) {
+			throw new IllegalStateException("Alphabet contains chars outside of Latin-1.");
+		}
+	}
+
+	private int checkOutput(long n, int dstLen, int dstOff) {
+		if (dstOff < 0 || dstOff > dstLen || n > dstLen - dstOff) {
+			throw new IndexOutOfBoundsException();
+		}
+		return (int) n;
+	}
+
+	private static void checkInput(int srcLen, int off, int len) {
+		if (off < 0 || len < 0 || off > srcLen - len) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	int encode(byte[] src, int off, int len, char[] dst, int dstOff) {
+		checkInput(src.length, off, len);
+		int n = checkOutput(encodedLength(len), dst.length, dstOff);
+		int i = off;
+		int j = dstOff;
+		int end = off + len;
+		int[] p = this.pairs;
+		switch (this.bits) {
+			case 4: {
+				FastBytes fb = FastBytes.INSTANCE;
+				for (; i <= end - 8; i += 8) {
+					long w = fb.getLongLE(src, i);
+					int x0 = p[(int) w & 0xff];
+					int x1 = p[(int) (w >>> 8) & 0xff];
+					int x2 = p[(int) (w >>> 16) & 0xff];
+					int x3 = p[(int) (w >>> 24) & 0xff];
+					int x4 = p[(int) (w >>> 32) & 0xff];
+					int x5 = p[(int) (w >>> 40) & 0xff];
+					int x6 = p[(int) (w >>> 48) & 0xff];
+					int x7 = p[(int) (w >>> 56)];
+					dst[j + 15] = (char) x7;
+					dst[j] = (char) (x0 >>> 16);
+					dst[j + 1] = (char) x0;
+					dst[j + 2] = (char) (x1 >>> 16);
+					dst[j + 3] = (char) x1;
+					dst[j + 4] = (char) (x2 >>> 16);
+					dst[j + 5] = (char) x2;
+					dst[j + 6] = (char) (x3 >>> 16);
+					dst[j + 7] = (char) x3;
+					dst[j + 8] = (char) (x4 >>> 16);
+					dst[j + 9] = (char) x4;
+					dst[j + 10] = (char) (x5 >>> 16);
+					dst[j + 11] = (char) x5;
+					dst[j + 12] = (char) (x6 >>> 16);
+					dst[j + 13] = (char) x6;
+					dst[j + 14] = (char) (x7 >>> 16);
+					j += 16;
+				}
+				break;
+			}
+			case 6: {
+				for (; i <= end - 6; i += 6, j += 8) {
+					long w = (src[i] & 0xffL) << 40 | (src[i + 1] & 0xffL) << 32 | (src[i + 2] & 0xffL) << 24
+							| (src[i + 3] & 0xffL) << 16 | (src[i + 4] & 0xffL) << 8 | (src[i + 5] & 0xffL);
+					int x0 = p[(int) (w >>> 36)];
+					int x1 = p[(int) (w >>> 24) & 0xfff];
+					int x2 = p[(int) (w >>> 12) & 0xfff];
+					int x3 = p[(int) w & 0xfff];
+					dst[j + 7] = (char) x3;
+					dst[j] = (char) (x0 >>> 16);
+					dst[j + 1] = (char) x0;
+					dst[j + 2] = (char) (x1 >>> 16);
+					dst[j + 3] = (char) x1;
+					dst[j + 4] = (char) (x2 >>> 16);
+					dst[j + 5] = (char) x2;
+					dst[j + 6] = (char) (x3 >>> 16);
+				}
+				break;
+			}
+			case 8: {
+				char[] l = this.letters;
+				for (; i < end; i++, j++) {
+					dst[j] = l[src[i] & 0xff];
+				}
+				break;
+			}
+		}
+		// remaining bits, one letter at a time
+		char[] l = this.letters;
+		int b = this.bits;
+		int m = this.mask;
+		int acc = 0;
+		int k = 0;
+		for (; i < end; i++) {
+			acc = acc << 8 | (src[i] & 0xff);
+			for (k += 8; k >= b; j++) {
+				k -= b;
+				dst[j] = l[(acc >>> k) & m];
+			}
+		}
+		if (k > 0) {
+			dst[j] = l[(acc << (b - k)) & m];
+		}
+		return n;
+	}
+
+	int encode(byte[] src, int off, int len, byte[] dst, int dstOff) {
+		checkLatin1();
+		checkInput(src.length, off, len);
+		int n = checkOutput(encodedLength(len), dst.length, dstOff);
+		int i = off;
+		int j = dstOff;
+		int end = off + len;
+		int[] p = this.pairs;
+		switch (this.bits) {
+			case 4: {
+				FastBytes fb = FastBytes.INSTANCE;
+				for (; i <= end - 8; i += 8) {
+					long w = fb.getLongLE(src, i);
+					int x0 = p[(int) w & 0xff];
+					int x1 = p[(int) (w >>> 8) & 0xff];
+					int x2 = p[(int) (w >>> 16) & 0xff];
+					int x3 = p[(int) (w >>> 24) & 0xff];
+					int x4 = p[(int) (w >>> 32) & 0xff];
+					int x5 = p[(int) (w >>> 40) & 0xff];
+					int x6 = p[(int) (w >>> 48) & 0xff];
+					int x7 = p[(int) (w >>> 56)];
+					dst[j + 15] = (byte) x7;
+					dst[j] = (byte) (x0 >>> 16);
+					dst[j + 1] = (byte) x0;
+					dst[j + 2] = (byte) (x1 >>> 16);
+					dst[j + 3] = (byte) x1;
+					dst[j + 4] = (byte) (x2 >>> 16);
+					dst[j + 5] = (byte) x2;
+					dst[j + 6] = (byte) (x3 >>> 16);
+					dst[j + 7] = (byte) x3;
+					dst[j + 8] = (byte) (x4 >>> 16);
+					dst[j + 9] = (byte) x4;
+					dst[j + 10] = (byte) (x5 >>> 16);
+					dst[j + 11] = (byte) x5;
+					dst[j + 12] = (byte) (x6 >>> 16);
+					dst[j + 13] = (byte) x6;
+					dst[j + 14] = (byte) (x7 >>> 16);
+					j += 16;
+				}
+				break;
+			}
+			case 6: {
+				for (; i <= end - 6; i += 6, j += 8) {
+					long w = (src[i] & 0xffL) << 40 | (src[i + 1] & 0xffL) << 32 | (src[i + 2] & 0xffL) << 24
+							| (src[i + 3] & 0xffL) << 16 | (src[i + 4] & 0xffL) << 8 | (src[i + 5] & 0xffL);
+					int x0 = p[(int) (w >>> 36)];
+					int x1 = p[(int) (w >>> 24) & 0xfff];
+					int x2 = p[(int) (w >>> 12) & 0xfff];
+					int x3 = p[(int) w & 0xfff];
+					dst[j + 7] = (byte) x3;
+					dst[j] = (byte) (x0 >>> 16);
+					dst[j + 1] = (byte) x0;
+					dst[j + 2] = (byte) (x1 >>> 16);
+					dst[j + 3] = (byte) x1;
+					dst[j + 4] = (byte) (x2 >>> 16);
+					dst[j + 5] = (byte) x2;
+					dst[j + 6] = (byte) (x3 >>> 16);
+				}
+				break;
+			}
+			case 8: {
+				char[] l = this.letters;
+				for (; i < end; i++, j++) {
+					dst[j] = (byte) l[src[i] & 0xff];
+				}
+				break;
+			}
+		}
+		char[] l = this.letters;
+		int b = this.bits;
+		int m = this.mask;
+		int acc = 0;
+		int k = 0;
+		for (; i < end; i++) {
+			acc = acc << 8 | (src[i] & 0xff);
+			for (k += 8; k >= b; j++) {
+				k -= b;
+				dst[j] = (byte) l[(acc >>> k) & m];
+			}
+		}
+		if (k > 0) {
+			dst[j] = (byte) l[(acc << (b - k)) & m];
+		}
+		return n;
+	}
+
+	// the value of the letter, or a negative number
+	private int value(int c) {
+		if (c < 256) {
+			return this.table[c];
+		}
+		int v = this.alphabet.indexOf(c);
+		return v < 0 ? -1 : v;
+	}
+
+	private IllegalArgumentException illegal(int index, int c) {
+		return new IllegalArgumentException("Illegal character at index " + index + ": '" + (char) c + "'");
+	}
+
+	// the value of a Latin-1 letter, or a negative number. chars above 0xff yield a negative number.
+	private static int val(int[] t, int c) {
+		return t[c & 0xff] | -(c >>> 8);
+	}
+
+	// decodes whole groups of 8 letters, returns the index after the last one
+	private int groups(char[] src, int i, int end, byte[] dst, int j) {
+		int[] t = this.table;
+		int b = this.bits;
+		for (; i <= end - 8; i += 8, j += b) {
+			int v7 = val(t, src[i + 7]);
+			int v0 = val(t, src[i]);
+			int v1 = val(t, src[i + 1]);
+			int v2 = val(t, src[i + 2]);
+			int v3 = val(t, src[i + 3]);
+			int v4 = val(t, src[i + 4]);
+			int v5 = val(t, src[i + 5]);
+			int v6 = val(t, src[i + 6]);
+			if ((v0 | v1 | v2 | v3 | v4 | v5 | v6 | v7) < 0) {
+				return i;
+			}
+			switch (b) {
+				case 4:
+					dst[j + 3] = (byte) (v6 << 4 | v7);
+					dst[j] = (byte) (v0 << 4 | v1);
+					dst[j + 1] = (byte) (v2 << 4 | v3);
+					dst[j + 2] = (byte) (v4 << 4 | v5);
+					break;
+				case 6: {
+					int hi = v0 << 18 | v1 << 12 | v2 << 6 | v3;
+					int lo = v4 << 18 | v5 << 12 | v6 << 6 | v7;
+					dst[j + 5] = (byte) lo;
+					dst[j] = (byte) (hi >>> 16);
+					dst[j + 1] = (byte) (hi >>> 8);
+					dst[j + 2] = (byte) hi;
+					dst[j + 3] = (byte) (lo >>> 16);
+					dst[j + 4] = (byte) (lo >>> 8);
+					break;
+				}
+				default: {
+					long acc = (long) (v0 << b | v1) << (b * 6)
+							| (long) (v2 << b | v3) << (b << 2)
+							| (long) (v4 << b | v5) << (b << 1)
+							| (v6 << b | v7);
+					for (int k = b - 1, jj = j; k >= 0; k--, jj++) {
+						dst[jj] = (byte) (acc >>> (k << 3));
+					}
+				}
+			}
+		}
+		return i;
+	}
+
+	int decode(char[] src, int off, int len, byte[] dst, int dstOff) {
+		checkInput(src.length, off, len);
+		int n = checkOutput(decodedLength(len), dst.length, dstOff);
+		int b = this.bits;
+		int i = this.wide ? off : groups(src, off, off + len, dst, dstOff);
+		int j = dstOff + (i - off) / 8 * b;
+		// remaining letters (or the group holding an illegal one), one at a time
+		int acc = 0;
+		int k = 0;
+		for (int end = off + len; i < end; i++) {
+			int v = value(src[i]);
+			if (v < 0) {
+				throw illegal(i, src[i]);
+			}
+			acc = acc << b | v;
+			if ((k += b) >= 8) {
+				k -= 8;
+				dst[j++] = (byte) (acc >>> k);
+			}
+		}
+		if ((acc & ((1 << k) - 1)) != 0) {
+			throw new IllegalArgumentException("Non-zero trailing bits.");
+		}
+		return n;
+	}
+
+	// decodes whole groups of 8 letters, returns the index after the last one
+	private int groups(byte[] src, int i, int end, byte[] dst, int j) {
+		int[] t = this.table;
+		int b = this.bits;
+		for (; i <= end - 8; i += 8, j += b) {
+			int v7 = t[src[i + 7] & 0xff];
+			int v0 = t[src[i] & 0xff];
+			int v1 = t[src[i + 1] & 0xff];
+			int v2 = t[src[i + 2] & 0xff];
+			int v3 = t[src[i + 3] & 0xff];
+			int v4 = t[src[i + 4] & 0xff];
+			int v5 = t[src[i + 5] & 0xff];
+			int v6 = t[src[i + 6] & 0xff];
+			if ((v0 | v1 | v2 | v3 | v4 | v5 | v6 | v7) < 0) {
+				return i;
+			}
+			switch (b) {
+				case 4:
+					dst[j + 3] = (byte) (v6 << 4 | v7);
+					dst[j] = (byte) (v0 << 4 | v1);
+					dst[j + 1] = (byte) (v2 << 4 | v3);
+					dst[j + 2] = (byte) (v4 << 4 | v5);
+					break;
+				case 6: {
+					int hi = v0 << 18 | v1 << 12 | v2 << 6 | v3;
+					int lo = v4 << 18 | v5 << 12 | v6 << 6 | v7;
+					dst[j + 5] = (byte) lo;
+					dst[j] = (byte) (hi >>> 16);
+					dst[j + 1] = (byte) (hi >>> 8);
+					dst[j + 2] = (byte) hi;
+					dst[j + 3] = (byte) (lo >>> 16);
+					dst[j + 4] = (byte) (lo >>> 8);
+					break;
+				}
+				default: {
+					long acc = (long) (v0 << b | v1) << (b * 6)
+							| (long) (v2 << b | v3) << (b << 2)
+							| (long) (v4 << b | v5) << (b << 1)
+							| (v6 << b | v7);
+					for (int k = b - 1, jj = j; k >= 0; k--, jj++) {
+						dst[jj] = (byte) (acc >>> (k << 3));
+					}
+				}
+			}
+		}
+		return i;
+	}
+
+	int decode(byte[] src, int off, int len, byte[] dst, int dstOff) {
+		checkInput(src.length, off, len);
+		int n = checkOutput(decodedLength(len), dst.length, dstOff);
+		int[] t = this.table;
+		int b = this.bits;
+		int i = groups(src, off, off + len, dst, dstOff);
+		int j = dstOff + (i - off) / 8 * b;
+		// remaining letters (or the group holding an illegal one), one at a time
+		int acc = 0;
+		int k = 0;
+		for (int end = off + len; i < end; i++) {
+			int v = t[src[i] & 0xff];
+			if (v < 0) {
+				throw illegal(i, src[i] & 0xff);
+			}
+			acc = acc << b | v;
+			if ((k += b) >= 8) {
+				k -= 8;
+				dst[j++] = (byte) (acc >>> k);
+			}
+		}
+		if ((acc & ((1 << k) - 1)) != 0) {
+			throw new IllegalArgumentException("Non-zero trailing bits.");
+		}
+		return n;
+	}
+
+	int decode(CharSequence src, int off, int len, byte[] dst, int dstOff) {
+		checkInput(src.length(), off, len);
+		int n = checkOutput(decodedLength(len), dst.length, dstOff);
+		int b = this.bits;
+		int j = dstOff;
+		int acc = 0;
+		int k = 0;
+		for (int i = off, end = off + len; i < end; i++) {
+			char c = src.charAt(i);
+			int v = value(c);
+			if (v < 0) {
+				throw illegal(i, c);
+			}
+			acc = acc << b | v;
+			if ((k += b) >= 8) {
+				k -= 8;
+				dst[j++] = (byte) (acc >>> k);
+			}
+		}
+		if ((acc & ((1 << k) - 1)) != 0) {
+			throw new IllegalArgumentException("Non-zero trailing bits.");
+		}
+		return n;
+	}
+}
@@ -0,0 +1,369 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.bitsandpieces.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses text produced by a {@code Format} back into numbers. Instances are
+ * immutable and hold the look-up table for the {@code Format}'s alphabet.
+ * <p>
+ * Decimal and hexadecimal alphabets are parsed 8 digits at a time from
+ * {@code byte[]} and {@code char[]} input, by validating and combining the
+ * digits within a single {@code long}.
+ *
+ * @author Jan Kebernik
+ */
+final class FormatParser {
+
+	private static final int OTHER = 0;
+	private static final int DEC = 1;
+	private static final int HEX_LOWER = 2;
+	private static final int HEX_UPPER = 3;
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGHS = 0x8080808080808080L;
+	private static final long LOWS = 0x7f7f7f7f7f7f7f7fL;
+
+	private final String alphabet;
+	// digit values of chars below 256, or -1
+	private final int[] table;
+	private final int radix;
+	private final String px, sx;
+	// -1 if none
+	private final int ix;
+	private final boolean signed;
+	private final int kind;
+	// largest unsigned long that can be multiplied by the radix without overflow, and the remainder
+	private final long maxQ;
+	private final long maxR;
+	// largest unsigned long that can take 8 more digits without overflow
+	private final long safe;
+
+	FormatParser(Format f) {
+		String a = f.alphabet();
+		int r = a.length();
+		int[] t = ArrayUtil.fill(new int[256], -1);
+		for (int i = r - 1; i >= 0; i--) {
+			char c = a.charAt(i);
+			if (c < 256) {
+				t[c] = i;	// first occurrence wins
+			}
+		}
+		this.alphabet = a;
+		this.table = t;
+		this.radix = r;
+		this.px = f.prefix() == null ? "" : f.prefix();
+		this.sx = f.suffix() == null ? "" : f.suffix();
+		Character x = f.infix();
+		this.ix = x == null ? -1 : x;
+		this.signed = f.isSigned();
+		this.kind = "0123456789".equals(a) ? DEC
+				: "0123456789abcdef".equals(a) ? HEX_LOWER
+						: "0123456789ABCDEF".equals(a) ? HEX_UPPER
+								: OTHER;
+		this.maxQ = Long.divideUnsigned(-1L, r);
+		this.maxR = Long.remainderUnsigned(-1L, r);
+		this.safe = this.kind == DEC ? Long.divideUnsigned(-1L, 100000000L) - 1L : 0xffffffffL;
+	}
+
+	private int digit(int c) {
+		return c < 256 ? this.table[c] : this.alphabet.indexOf(c);
+	}
+
+	// true if accumulating another digit overflows an unsigned long
+	private boolean overflows(long acc, int d) {
+		return Long.compareUnsigned(acc, this.maxQ) > 0 || (acc == this.maxQ && d > this.maxR);
+	}
+
+	// accumulates a block of 8 digits. "acc" must be less than "safe".
+	private long pushBlock(long acc, long v) {
+		return this.kind == DEC ? acc * 100000000L + v : (acc << 32) | v;
+	}
+
+	// returns the value of 8 Latin-1 digits (first digit in the lowest byte) or -1
+	private long block(long x) {
+		return this.kind == DEC ? eightDecimal(x) : eightHex(x, this.kind == HEX_LOWER ? 0x60 : 0x40);
+	}
+
+	static long eightDecimal(long x) {
+		// every byte must be 0x30 to 0x39
+		if (((x & 0xf0f0f0f0f0f0f0f0L) | (((x + 0x0606060606060606L) & 0xf0f0f0f0f0f0f0f0L) >>> 4)) != 0x3333333333333333L) {
+			return -1L;
+		}
+		x = ((x & 0x0f0f0f0f0f0f0f0fL) * 2561L) >>> 8;
+		x = ((x & 0x00ff00ff00ff00ffL) * 6553601L) >>> 16;
+		return ((x & 0x0000ffff0000ffffL) * 42949672960001L) >>> 32;
+	}
+
+	// "letters" is the byte preceding the letter 'a' or 'A'
+	static long eightHex(long x, int letters) {
+		long digits = between(x, 0x2f, 0x3a);
+		long alpha = between(x, letters, letters + 7);
+		if ((digits | alpha) != HIGHS) {
+			return -1L;
+		}
+		x = (x & 0x0f0f0f0f0f0f0f0fL) + (alpha >>> 7) * 9L;
+		// combine neighbouring nibbles, bytes and shorts, the first being the more significant
+		x = ((x & 0x000f000f000f000fL) << 4) | ((x & 0x0f000f000f000f00L) >>> 8);
+		x = ((x & 0x000000ff000000ffL) << 8) | ((x & 0x00ff000000ff0000L) >>> 16);
+		return ((x & 0xffffL) << 16) | ((x >>> 32) & 0xffffL);
+	}
+
+	// sets the high bit of every byte b with m < b < n. exact for every byte.
+	private static long between(long x, int m, int n) {
+		long y = x & LOWS;
+		return (ONES * (127 + n) - y) & ~x & (y + ONES * (127 - m)) & HIGHS;
+	}
+
+	// packs 8 chars into bytes, or returns -1 if any char does not fit into a byte
+	private static long pack(char[] a, int i) {
+		FastBytes fb = FastBytes.INSTANCE;
+		long lo = fb.getLongLE(a, i);
+		long hi = fb.getLongLE(a, i + 4);
+		if (((lo | hi) & 0xff00ff00ff00ff00L) != 0L) {
+			return -1L;
+		}
+		lo = (lo | (lo >>> 8)) & 0x0000ffff0000ffffL;
+		lo = (lo | (lo >>> 16)) & 0xffffffffL;
+		hi = (hi | (hi >>> 8)) & 0x0000ffff0000ffffL;
+		hi = (hi | (hi >>> 16)) & 0xffffffffL;
+		return lo | (hi << 32);
+	}
+
+	// true if the accumulated magnitude fits into the result
+	private boolean inRange(long acc, boolean neg, boolean wide) {
+		if (wide) {
+			return !this.signed || (neg ? Long.compareUnsigned(acc, Long.MIN_VALUE) <= 0 : acc >= 0L);
+		}
+		return Long.compareUnsigned(acc, !this.signed ? 0xffffffffL : neg ? 0x80000000L : 0x7fffffffL) <= 0;
+	}
+
+	private static NumberFormatException outOfRange(Object src) {
+		return new NumberFormatException("Value out of range: \"" + src + "\"");
+	}
+
+	private static NumberFormatException illegal(Object src) {
+		return new NumberFormatException("Illegal number: \"" + src + "\"");
+	}
+
+	long parse(CharSequence s, int off, int len, boolean wide) {
+		if (off < 0 || len < 0 || off > s.length() - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		int i = off;
+		int end = off + len;
+		boolean neg = false;
+		if (this.signed && i < end && s.charAt(i) == '-') {
+			neg = true;
+			i++;
+		}
+		String p = this.px;
+		int n = p.length();
+		if (n != 0) {
+			if (end - i < n) {
+				throw illegal(s.subSequence(off, off + len));
+			}
+			for (int j = 0; j < n; j++) {
+				if (s.charAt(i++) != p.charAt(j)) {
+					throw illegal(s.subSequence(off, off + len));
+				}
+			}
+		}
+		p = this.sx;
+		n = p.length();
+		if (n != 0) {
+			if (end - i < n) {
+				throw illegal(s.subSequence(off, off + len));
+			}
+			end -= n;
+			for (int j = 0; j < n; j++) {
+				if (s.charAt(end + j) != p.charAt(j)) {
+					throw illegal(s.subSequence(off, off + len));
+				}
+			}
+		}
+		long acc = 0L;
+		int digits = 0;
+		boolean gap = false;
+		while (i < end) {
+			int c = s.charAt(i++);
+			int d = digit(c);
+			if (d < 0) {
+				if (c == this.ix && digits != 0 && !gap) {
+					gap = true;
+					continue;
+				}
+				throw illegal(s.subSequence(off, off + len));
+			}
+			if (overflows(acc, d)) {
+				throw outOfRange(s.subSequence(off, off + len));
+			}
+			acc = acc * this.radix + d;
+			digits++;
+			gap = false;
+		}
+		if (digits == 0 || gap) {
+			throw illegal(s.subSequence(off, off + len));
+		}
+		if (!inRange(acc, neg, wide)) {
+			throw outOfRange(s.subSequence(off, off + len));
+		}
+		return neg ? -acc : acc;
+	}
+
+	long parse(char[] a, int off, int len, boolean wide) {
+		if (off < 0 || len < 0 || off > a.length - len) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		int i = off;
+		int end = off + len;
+		boolean neg = false;
+		if (this.signed && i < end && a[i] == '-') {
+			neg = true;
+			i++;
+		}
+		String p = this.px;
+		int n = p.length();
+		if (n != 0) {
+			if (end - i < n) {
+				throw illegal(new String(a, off, len));
+			}
+			for (int j = 0; j < n; j++) {
+				if (a[i++] != p.charAt(j)) {
+					throw illegal(new String(a, off, len));
+				}
+			}
+		}
+		p = this.sx;
+		n = p.length();
+		if (n != 0) {
+			if (end - i < n) {
+				throw illegal(new String(a, off, len));
+			}
+			end -= n;
+			for (int j = 0; j < n; j++) {
+				if (a[end + j] != p.charAt(j)) {
+					throw illegal(new String(a, off, len));
+				}
+			}
+		}
+		long acc = 0L;
+		int digits = 0;
+		boolean gap = false;
+		boolean swar = this.kind != OTHER;
+		while (i < end) {
+			if (swar && end - i >= 8 && Long.compareUnsigned(acc, this.safe) < 0) {
+				long x = pack(a, i);
+				if (x >= 0L && (x = block(x)) >= 0L) {
+					acc = pushBlock(acc, x);
+					i += 8;
+					digits += 8;
+					gap = false;
+					continue;
+				}
+			}
+			int c = a[i++];
+			int d = digit(c);
+			if (d < 0) {
+				if (c == this.ix && digits != 0 && !gap) {
+					gap = true;
+					continue;
+				}
+				throw illegal(new String(a, off, len));
+			}
+			if (overflows(acc, d)) {
+				throw outOfRange(new String(a, off, len));
+			}
+			acc = acc * this.radix + d;
+			digits++;
+			gap = false;
+		}
+		if (digits == 0 || gap) {
+			throw illegal(new String(a, off, len));
+		}
+		if (!inRange(acc, neg, wide)) {
+			throw outOfRange(new String(a, off, len));
+		}
+		return neg ? -acc : acc;
+	}
+
+	long parse(byte[] a, int off, int len, boolean wide) {
+		if (off < 0 || len < 0 || off > a.length - len) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		int i = off;
+		int end = off + len;
+		boolean neg = false;
+		if (this.signed && i < end && a[i] == '-') {
+			neg = true;
+			i++;
+		}
+		String p = this.px;
+		int n = p.length();
+		if (n != 0) {
+			if (end - i < n) {
+				throw illegal(new String(a, off, len, StandardCharsets.ISO_8859_1));
+			}
+			for (int j = 0; j < n; j++) {
+				if ((a[i++] & 0xff) != p.charAt(j)) {
+					throw illegal(new String(a, off, len, StandardCharsets.ISO_8859_1));
+				}
+			}
+		}
+		p = this.sx;
+		n = p.length();
+		if (n != 0) {
+			if (end - i < n) {
+				throw illegal(new String(a, off, len, StandardCharsets.ISO_8859_1));
+			}
+			end -= n;
+			for (int j = 0; j < n; j++) {
+				if ((a[end + j] & 0xff) != p.charAt(j)) {
+					throw illegal(new String(a, off, len, StandardCharsets.ISO_8859_1));
+				}
+			}
+		}
+		long acc = 0L;
+		int digits = 0;
+		boolean gap = false;
+		boolean swar = this.kind != OTHER;
+		while (i < end) {
+			if (swar && end - i >= 8 && Long.compareUnsigned(acc, this.safe) < 0) {
+				long x = block(FastBytes.INSTANCE.getLongLE(a, i));
+				if (x >= 0L) {
+					acc = pushBlock(acc, x);
+					i += 8;
+					digits += 8;
+					gap = false;
+					continue;
+				}
+			}
+			int c = a[i++] & 0xff;
+			int d = digit(c);
+			if (d < 0) {
+				if (c == this.ix && digits != 0 && !gap) {
+					gap = true;
+					continue;
+				}
+				throw illegal(new String(a, off, len, StandardCharsets.ISO_8859_1));
+			}
+			if (overflows(acc, d)) {
+				throw outOfRange(new String(a, off, len, StandardCharsets.ISO_8859_1));
+			}
+			acc = acc * this.radix + d;
+			digits++;
+			gap = false;
+		}
+		if (digits == 0 || gap) {
+			throw illegal(new String(a, off, len, StandardCharsets.ISO_8859_1));
+		}
+		if (!inRange(acc, neg, wide)) {
+			throw outOfRange(new String(a, off, len, StandardCharsets.ISO_8859_1));
+		}
+		return neg ? -acc : acc;
+	}
+}
@@ -202,6 +202,23 @@ final class Formats {
 		return 8;		// radix == 2
 	}
 
+	// backs the default parse methods of Format. only foreign implementations
+	// pay for a new parser on every call.
+	static FormatParser parser(Format f) {
+		if (f instanceof AbstractFormat) {
+			return ((AbstractFormat) f).parser();
+		}
+		return new FormatParser(f);
+	}
+
+	// backs the default encode and decode methods of Format, same as above.
+	static FormatCodec codec(Format f) {
+		if (f instanceof AbstractFormat) {
+			return ((AbstractFormat) f).codec();
+		}
+		return new FormatCodec(f.alphabet());
+	}
+
 	private static abstract class AbstractFormat implements Format {
 
 		final char[][] tr, td;
@@ -212,6 +229,8 @@ final class Formats {
 		final String prefix, suffix;	// preserves nullity of paramters
 
 		private transient int hash = 0;	// lazy-loaded. thread-safe b/c effectively immutable
+		private transient FormatParser parser;	// lazy-loaded. thread-safe b/c immutable
+		private transient FormatCodec codec;	// lazy-loaded. thread-safe b/c immutable
 
 		private AbstractFormat(char[][] tr, char[][] td, String px, String sx, String alphabet, String prefix, String suffix, int iv) {
 			this.tr = tr;
@@ -269,6 +288,22 @@ final class Formats {
 			return Strings.newString(toCharArray(l));
 		}
 
+		FormatParser parser() {
+			FormatParser p = this.parser;
+			if (p == null) {
+				this.parser = p = new FormatParser(this);
+			}
+			return p;
+		}
+
+		FormatCodec codec() {
+			FormatCodec c = this.codec;
+			if (c == null) {
+				this.codec = c = new FormatCodec(this.alphabet);
+			}
+			return c;
+		}
+
 		@Override
 		public final boolean equals(Object obj) {
 			if (this == obj) {
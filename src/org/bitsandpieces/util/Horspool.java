@@ -5,524 +5,632 @@
  */
 package org.bitsandpieces.util;
 
-import java.util.List;
+import java.util.Objects;
 import org.bitsandpieces.util.collection.primitive.PrimitiveList.IntList;
 
 /**
- * Boyer-Moore-Hoorspool exact string matching. Adapted to use work tables of
- * size 256 instead of 65536.
+ * Boyer-Moore-Horspool exact substring search. A needle is compiled once into
+ * a {@code Horspool} instance holding its shift tables, which can then be used
+ * to search any number of haystacks.
+ * <p>
+ * Needles compiled from {@code byte}s search {@code byte[]} haystacks, needles
+ * compiled from {@code char}s search {@code char[]} and {@code CharSequence}
+ * haystacks. Calling a search method of the other kind throws an
+ * {@code IllegalStateException}. {@code char}s are folded onto tables of size
+ * 256 by their low byte, instead of 65536, which merely shortens some shifts
+ * for text outside the Latin-1 range.
+ * <p>
+ * All indices are absolute indices into the haystack. An empty needle matches
+ * at every index. Instances are immutable and may be shared between threads.
  *
  * @author Jan Kebernik
  */
-final class Horspool {
+public final class Horspool {
 
-	private Horspool() {
+	private static final int TABLE_SIZE = 256;
+
+	// exactly one of these is non-null
+	private final byte[] bytes;
+	private final char[] chars;
+	private final int len;
+	// shifts for forward and backward searches, by (low) byte
+	private final int[] fwd;
+	private final int[] bwd;
+
+	private Horspool(byte[] bytes, char[] chars, int len) {
+		this.bytes = bytes;
+		this.chars = chars;
+		this.len = len;
+		int[] f = new int[TABLE_SIZE];
+		int[] b = new int[TABLE_SIZE];
+		ArrayUtil.fill(f, len);
+		ArrayUtil.fill(b, len);
+		int m = len - 1;
+		// later entries are always smaller, so colliding chars keep the safe shift
+		if (bytes != null) {
+			for (int i = 0; i < m; i++) {
+				f[bytes[i] & 0xff] = m - i;
+			}
+			for (int i = m; i > 0; i--) {
+				b[bytes[i] & 0xff] = i;
+			}
+		} else {
+			for (int i = 0; i < m; i++) {
+				f[chars[i] & 0xff] = m - i;
+			}
+			for (int i = m; i > 0; i--) {
+				b[chars[i] & 0xff] = i;
+			}
+		}
+		this.fwd = f;
+		this.bwd = b;
 	}
 
-	private static int transformBackward(char c, int index) {
-		return (c >>> ((index & 1) << 3)) & 0xff;
+	/**
+	 * Compiles the specified {@code byte} needle.
+	 *
+	 * @param needle the {@code byte}s to search for.
+	 * @return a {@code Horspool} instance searching {@code byte[]} haystacks.
+	 */
+	public static Horspool compile(byte[] needle) {
+		return compile(needle, 0, needle.length);
 	}
 
-	private static int getByteBackward(char[] chars, int index) {
-		return transformBackward(chars[index >>> 1], index);
+	/**
+	 * Compiles the specified range of {@code byte}s as a needle. The range is
+	 * copied.
+	 *
+	 * @param needle the array containing the {@code byte}s to search for.
+	 * @param off the offset into the array.
+	 * @param len the length of the needle.
+	 * @return a {@code Horspool} instance searching {@code byte[]} haystacks.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public static Horspool compile(byte[] needle, int off, int len) {
+		if (off < 0 || len < 0 || off > needle.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		byte[] b = new byte[len];
+		System.arraycopy(needle, off, b, 0, len);
+		return new Horspool(b, null, len);
 	}
 
-	private static int getByteBackward(CharSequence chars, int index) {
-		return transformBackward(chars.charAt(index >>> 1), index);
+	/**
+	 * Compiles the specified {@code char} needle.
+	 *
+	 * @param needle the {@code char}s to search for.
+	 * @return a {@code Horspool} instance searching {@code char[]} and
+	 * {@code CharSequence} haystacks.
+	 */
+	public static Horspool compile(char[] needle) {
+		return compile(needle, 0, needle.length);
 	}
 
-	private static int transformForward(char c, int index) {
-		return (c >>> (((index & 1) ^ 1) << 3)) & 0xff;
+	/**
+	 * Compiles the specified range of {@code char}s as a needle. The range is
+	 * copied.
+	 *
+	 * @param needle the array containing the {@code char}s to search for.
+	 * @param off the offset into the array.
+	 * @param len the length of the needle.
+	 * @return a {@code Horspool} instance searching {@code char[]} and
+	 * {@code CharSequence} haystacks.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public static Horspool compile(char[] needle, int off, int len) {
+		if (off < 0 || len < 0 || off > needle.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		char[] c = new char[len];
+		System.arraycopy(needle, off, c, 0, len);
+		return new Horspool(null, c, len);
 	}
 
-	private static int getByteForward(char[] chars, int index) {
-		return transformForward(chars[index >>> 1], index);
+	/**
+	 * Compiles the specified {@code char} needle.
+	 *
+	 * @param needle the {@code char}s to search for.
+	 * @return a {@code Horspool} instance searching {@code char[]} and
+	 * {@code CharSequence} haystacks.
+	 */
+	public static Horspool compile(CharSequence needle) {
+		int n = needle.length();
+		char[] c = new char[n];
+		if (needle instanceof String) {
+			((String) needle).getChars(0, n, c, 0);
+		} else {
+			for (int i = 0; i < n; i++) {
+				c[i] = needle.charAt(i);
+			}
+		}
+		return new Horspool(null, c, n);
 	}
 
-	private static int getByteForward(CharSequence chars, int index) {
-		return transformForward(chars.charAt(index >>> 1), index);
+	/**
+	 * Returns the length of the needle.
+	 *
+	 * @return the length of the needle.
+	 */
+	public int length() {
+		return this.len;
 	}
 
-	final static List<Integer> backward(char[] haystack, int hoff, int hlen, char[] needle, int noff, int nlen, int[] work, IntList results) {
-		// needle- and haystack-bytes are simply considered in reverse order
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		int hMaxByteIdx = hByteOff + hBytes - 1;
-		for (int i = nMaxIdx, j = 0; i > noff; i--) {
-			int c = needle[i];
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
+	// true if this instance was compiled from the specified chars
+	boolean matches(CharSequence s) {
+		char[] c = this.chars;
+		if (c == null || c.length != s.length()) {
+			return false;
 		}
-		work[needle[0] >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hBytes - nBytes, i = 0; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteBackward(needle, (nByteOff + nMaxByteIdx - j)) == getByteBackward(haystack, hMaxByteIdx - i - j)) {
-				j--;
-			}
-			if (j < 0) {
-				results.add(((hMaxByteIdx - i) >>> 1) - (nlen - 1));
+		for (int i = 0; i < c.length; i++) {
+			if (c[i] != s.charAt(i)) {
+				return false;
 			}
-			i += nMaxByteIdx;
-			i -= work[getByteBackward(haystack, hMaxByteIdx - i)] - 1;
 		}
-		return results;
+		return true;
 	}
 
-	final static List<Integer> backward(char[] haystack, int hoff, int hlen, CharSequence needle, int noff, int nlen, int[] work, IntList results) {
-		// needle- and haystack-bytes are simply considered in reverse order
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		int hMaxByteIdx = hByteOff + hBytes - 1;
-		for (int i = nMaxIdx, j = 0; i > noff; i--) {
-			int c = needle.charAt(i);
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
+	private byte[] bytes() {
+		byte[] b = this.bytes;
+		if (b == null) {
+			throw new IllegalStateException("Needle consists of chars.");
 		}
-		work[needle.charAt(0) >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hBytes - nBytes, i = 0; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteBackward(needle, (nByteOff + nMaxByteIdx - j)) == getByteBackward(haystack, hMaxByteIdx - i - j)) {
-				j--;
-			}
-			if (j < 0) {
-				results.add(((hMaxByteIdx - i) >>> 1) - (nlen - 1));
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteBackward(haystack, hMaxByteIdx - i)] - 1;
-		}
-		return results;
+		return b;
 	}
 
-	final static List<Integer> backward(CharSequence haystack, int hoff, int hlen, char[] needle, int noff, int nlen, int[] work, IntList results) {
-		// needle- and haystack-bytes are simply considered in reverse order
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		int hMaxByteIdx = hByteOff + hBytes - 1;
-		for (int i = nMaxIdx, j = 0; i > noff; i--) {
-			int c = needle[i];
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
-		}
-		work[needle[0] >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hBytes - nBytes, i = 0; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteBackward(needle, (nByteOff + nMaxByteIdx - j)) == getByteBackward(haystack, hMaxByteIdx - i - j)) {
-				j--;
-			}
-			if (j < 0) {
-				results.add(((hMaxByteIdx - i) >>> 1) - (nlen - 1));
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteBackward(haystack, hMaxByteIdx - i)] - 1;
+	private char[] chars() {
+		char[] c = this.chars;
+		if (c == null) {
+			throw new IllegalStateException("Needle consists of bytes.");
 		}
-		return results;
+		return c;
 	}
 
-	final static List<Integer> backward(CharSequence haystack, int hoff, int hlen, CharSequence needle, int noff, int nlen, int[] work, IntList results) {
-		// needle- and haystack-bytes are simply considered in reverse order
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		int hMaxByteIdx = hByteOff + hBytes - 1;
-		for (int i = nMaxIdx, j = 0; i > noff; i--) {
-			int c = needle.charAt(i);
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
+	private static void checkRange(int length, int off, int len) {
+		if (off < 0 || len < 0 || off > length - len) {
+			throw new IndexOutOfBoundsException();
 		}
-		work[needle.charAt(0) >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hBytes - nBytes, i = 0; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteBackward(needle, (nByteOff + nMaxByteIdx - j)) == getByteBackward(haystack, hMaxByteIdx - i - j)) {
-				j--;
-			}
-			if (j < 0) {
-				results.add(((hMaxByteIdx - i) >>> 1) - (nlen - 1));
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteBackward(haystack, hMaxByteIdx - i)] - 1;
-		}
-		return results;
 	}
 
-	// returns indices relative to hoff
-	final static List<Integer> forward(char[] haystack, int hoff, int hlen, char[] needle, int noff, int nlen, int[] work, IntList results) {
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		for (int i = noff, j = 0; i < nMaxIdx; i++) {
-			int c = needle[i];
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
-		}
-		work[needle[nMaxIdx] >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hByteOff + hBytes - nBytes, i = hByteOff; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteForward(needle, nByteOff + j) == getByteForward(haystack, i + j)) {
-				j--;
-			}
-			if (j < 0) {
-				results.add(i >>> 1);
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteForward(haystack, i)] - 1;
-		}
-		return results;
+	/**
+	 * Returns the index of the first occurrence of the needle in the specified
+	 * array.
+	 *
+	 * @param haystack the array to search.
+	 * @return the index of the first occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalStateException if the needle consists of {@code char}s.
+	 */
+	public int indexOf(byte[] haystack) {
+		return _indexOf(bytes(), haystack, 0, haystack.length);
 	}
 
-	// returns indices relative to hoff
-	final static List<Integer> forward(char[] haystack, int hoff, int hlen, CharSequence needle, int noff, int nlen, int[] work, IntList results) {
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		for (int i = noff, j = 0; i < nMaxIdx; i++) {
-			int c = needle.charAt(i);
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
-		}
-		work[needle.charAt(nMaxIdx) >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hByteOff + hBytes - nBytes, i = hByteOff; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteForward(needle, nByteOff + j) == getByteForward(haystack, i + j)) {
-				j--;
-			}
-			if (j < 0) {
-				results.add(i >>> 1);
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteForward(haystack, i)] - 1;
-		}
-		return results;
+	/**
+	 * Returns the index of the first occurrence of the needle within the
+	 * specified range of the array.
+	 *
+	 * @param haystack the array to search.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the index of the first occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalStateException if the needle consists of {@code char}s.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public int indexOf(byte[] haystack, int off, int len) {
+		checkRange(haystack.length, off, len);
+		return _indexOf(bytes(), haystack, off, len);
 	}
 
-	// returns indices relative to hoff
-	final static List<Integer> forward(CharSequence haystack, int hoff, int hlen, char[] needle, int noff, int nlen, int[] work, IntList results) {
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		for (int i = noff, j = 0; i < nMaxIdx; i++) {
-			int c = needle[i];
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
+	private int _indexOf(byte[] b, byte[] h, int off, int len) {
+		int n = this.len;
+		if (n == 0) {
+			return off;
+		}
+		int m = n - 1;
+		int last = b[m];
+		int[] f = this.fwd;
+		for (int i = off, max = off + len - n; i <= max;) {
+			int c = h[i + m];
+			if (c == last) {
+				int j = m - 1;
+				while (j >= 0 && h[i + j] == b[j]) {
+					j--;
+				}
+				if (j < 0) {
+					return i;
+				}
+			}
+			i += f[c & 0xff];
 		}
-		work[needle[nMaxIdx] >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hByteOff + hBytes - nBytes, i = hByteOff; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteForward(needle, nByteOff + j) == getByteForward(haystack, i + j)) {
-				j--;
-			}
-			if (j < 0) {
-				results.add(i >>> 1);
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteForward(haystack, i)] - 1;
-		}
-		return results;
+		return -1;
 	}
 
-	// returns indices relative to hoff
-	final static List<Integer> forward(CharSequence haystack, int hoff, int hlen, CharSequence needle, int noff, int nlen, int[] work, IntList results) {
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		for (int i = noff, j = 0; i < nMaxIdx; i++) {
-			int c = needle.charAt(i);
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
+	/**
+	 * Returns the index of the last occurrence of the needle in the specified
+	 * array.
+	 *
+	 * @param haystack the array to search.
+	 * @return the index of the last occurrence or {@code -1} if there is none.
+	 * @throws IllegalStateException if the needle consists of {@code char}s.
+	 */
+	public int lastIndexOf(byte[] haystack) {
+		return _lastIndexOf(bytes(), haystack, 0, haystack.length);
+	}
+
+	/**
+	 * Returns the index of the last occurrence of the needle within the
+	 * specified range of the array.
+	 *
+	 * @param haystack the array to search.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the index of the last occurrence or {@code -1} if there is none.
+	 * @throws IllegalStateException if the needle consists of {@code char}s.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public int lastIndexOf(byte[] haystack, int off, int len) {
+		checkRange(haystack.length, off, len);
+		return _lastIndexOf(bytes(), haystack, off, len);
+	}
+
+	private int _lastIndexOf(byte[] b, byte[] h, int off, int len) {
+		int n = this.len;
+		if (n == 0) {
+			return off + len;
+		}
+		int first = b[0];
+		int[] w = this.bwd;
+		for (int i = off + len - n; i >= off;) {
+			int c = h[i];
+			if (c == first) {
+				int j = 1;
+				while (j < n && h[i + j] == b[j]) {
+					j++;
+				}
+				if (j == n) {
+					return i;
+				}
+			}
+			i -= w[c & 0xff];
 		}
-		work[needle.charAt(nMaxIdx) >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hByteOff + hBytes - nBytes, i = hByteOff; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteForward(needle, nByteOff + j) == getByteForward(haystack, i + j)) {
-				j--;
-			}
-			if (j < 0) {
-				results.add(i >>> 1);
+		return -1;
+	}
+
+	/**
+	 * Adds the indices of all (possibly overlapping) occurrences of the needle
+	 * within the specified range of the array to the specified list, in
+	 * ascending order.
+	 *
+	 * @param haystack the array to search.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @param results the list to which to add the indices.
+	 * @return {@code results}.
+	 * @throws IllegalStateException if the needle consists of {@code char}s.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public IntList findAll(byte[] haystack, int off, int len, IntList results) {
+		checkRange(haystack.length, off, len);
+		Objects.requireNonNull(results);
+		byte[] b = bytes();
+		for (int i = off, end = off + len; (i = _indexOf(b, haystack, i, end - i)) >= 0; i++) {
+			results.addInt(i);
+			if (i == end) {
+				break;
 			}
-			i += nMaxByteIdx;
-			i -= work[getByteForward(haystack, i)] - 1;
 		}
 		return results;
 	}
 
-	final static int lastIndexOf(char[] haystack, int hoff, int hlen, char[] needle, int noff, int nlen, int[] work) {
-		// needle- and haystack-bytes are simply considered in reverse order
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		int hMaxByteIdx = hByteOff + hBytes - 1;
-		for (int i = nMaxIdx, j = 0; i > noff; i--) {
-			int c = needle[i];
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
-		}
-		work[needle[0] >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hBytes - nBytes, i = 0; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteBackward(needle, (nByteOff + nMaxByteIdx - j)) == getByteBackward(haystack, hMaxByteIdx - i - j)) {
-				j--;
-			}
-			if (j < 0) {
-				return ((hMaxByteIdx - i) >>> 1) - (nlen - 1);
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteBackward(haystack, hMaxByteIdx - i)] - 1;
+	/**
+	 * Returns the index of the first occurrence of the needle in the specified
+	 * array.
+	 *
+	 * @param haystack the array to search.
+	 * @return the index of the first occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 */
+	public int indexOf(char[] haystack) {
+		return _indexOf(chars(), haystack, 0, haystack.length);
+	}
+
+	/**
+	 * Returns the index of the first occurrence of the needle within the
+	 * specified range of the array.
+	 *
+	 * @param haystack the array to search.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the index of the first occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public int indexOf(char[] haystack, int off, int len) {
+		checkRange(haystack.length, off, len);
+		return _indexOf(chars(), haystack, off, len);
+	}
+
+	private int _indexOf(char[] b, char[] h, int off, int len) {
+		int n = this.len;
+		if (n == 0) {
+			return off;
+		}
+		int m = n - 1;
+		char last = b[m];
+		int[] f = this.fwd;
+		for (int i = off, max = off + len - n; i <= max;) {
+			char c = h[i + m];
+			if (c == last) {
+				int j = m - 1;
+				while (j >= 0 && h[i + j] == b[j]) {
+					j--;
+				}
+				if (j < 0) {
+					return i;
+				}
+			}
+			i += f[c & 0xff];
 		}
 		return -1;
 	}
 
-	final static int lastIndexOf(char[] haystack, int hoff, int hlen, CharSequence needle, int noff, int nlen, int[] work) {
-		// needle- and haystack-bytes are simply considered in reverse order
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		int hMaxByteIdx = hByteOff + hBytes - 1;
-		for (int i = nMaxIdx, j = 0; i > noff; i--) {
-			int c = needle.charAt(i);
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
-		}
-		work[needle.charAt(0) >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hBytes - nBytes, i = 0; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteBackward(needle, (nByteOff + nMaxByteIdx - j)) == getByteBackward(haystack, hMaxByteIdx - i - j)) {
-				j--;
-			}
-			if (j < 0) {
-				return ((hMaxByteIdx - i) >>> 1) - (nlen - 1);
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteBackward(haystack, hMaxByteIdx - i)] - 1;
+	/**
+	 * Returns the index of the last occurrence of the needle in the specified
+	 * array.
+	 *
+	 * @param haystack the array to search.
+	 * @return the index of the last occurrence or {@code -1} if there is none.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 */
+	public int lastIndexOf(char[] haystack) {
+		return _lastIndexOf(chars(), haystack, 0, haystack.length);
+	}
+
+	/**
+	 * Returns the index of the last occurrence of the needle within the
+	 * specified range of the array.
+	 *
+	 * @param haystack the array to search.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the index of the last occurrence or {@code -1} if there is none.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public int lastIndexOf(char[] haystack, int off, int len) {
+		checkRange(haystack.length, off, len);
+		return _lastIndexOf(chars(), haystack, off, len);
+	}
+
+	private int _lastIndexOf(char[] b, char[] h, int off, int len) {
+		int n = this.len;
+		if (n == 0) {
+			return off + len;
+		}
+		char first = b[0];
+		int[] w = this.bwd;
+		for (int i = off + len - n; i >= off;) {
+			char c = h[i];
+			if (c == first) {
+				int j = 1;
+				while (j < n && h[i + j] == b[j]) {
+					j++;
+				}
+				if (j == n) {
+					return i;
+				}
+			}
+			i -= w[c & 0xff];
 		}
 		return -1;
 	}
 
-	final static int lastIndexOf(CharSequence haystack, int hoff, int hlen, char[] needle, int noff, int nlen, int[] work) {
-		// needle- and haystack-bytes are simply considered in reverse order
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		int hMaxByteIdx = hByteOff + hBytes - 1;
-		for (int i = nMaxIdx, j = 0; i > noff; i--) {
-			int c = needle[i];
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
-		}
-		work[needle[0] >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hBytes - nBytes, i = 0; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteBackward(needle, (nByteOff + nMaxByteIdx - j)) == getByteBackward(haystack, hMaxByteIdx - i - j)) {
-				j--;
+	/**
+	 * Adds the indices of all (possibly overlapping) occurrences of the needle
+	 * within the specified range of the array to the specified list, in
+	 * ascending order.
+	 *
+	 * @param haystack the array to search.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @param results the list to which to add the indices.
+	 * @return {@code results}.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public IntList findAll(char[] haystack, int off, int len, IntList results) {
+		checkRange(haystack.length, off, len);
+		Objects.requireNonNull(results);
+		char[] b = chars();
+		for (int i = off, end = off + len; (i = _indexOf(b, haystack, i, end - i)) >= 0; i++) {
+			results.addInt(i);
+			if (i == end) {
+				break;
 			}
-			if (j < 0) {
-				return ((hMaxByteIdx - i) >>> 1) - (nlen - 1);
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteBackward(haystack, hMaxByteIdx - i)] - 1;
 		}
-		return -1;
+		return results;
 	}
 
-	final static int lastIndexOf(CharSequence haystack, int hoff, int hlen, CharSequence needle, int noff, int nlen, int[] work) {
-		// needle- and haystack-bytes are simply considered in reverse order
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		int hMaxByteIdx = hByteOff + hBytes - 1;
-		for (int i = nMaxIdx, j = 0; i > noff; i--) {
-			int c = needle.charAt(i);
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
-		}
-		work[needle.charAt(0) >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hBytes - nBytes, i = 0; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteBackward(needle, (nByteOff + nMaxByteIdx - j)) == getByteBackward(haystack, hMaxByteIdx - i - j)) {
-				j--;
-			}
-			if (j < 0) {
-				return ((hMaxByteIdx - i) >>> 1) - (nlen - 1);
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteBackward(haystack, hMaxByteIdx - i)] - 1;
+	/**
+	 * Returns the index of the first occurrence of the needle in the specified
+	 * {@code CharSequence}.
+	 *
+	 * @param haystack the {@code CharSequence} to search.
+	 * @return the index of the first occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 */
+	public int indexOf(CharSequence haystack) {
+		return _indexOf(chars(), haystack, 0, haystack.length());
+	}
+
+	/**
+	 * Returns the index of the first occurrence of the needle within the
+	 * specified range of the {@code CharSequence}.
+	 *
+	 * @param haystack the {@code CharSequence} to search.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the index of the first occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public int indexOf(CharSequence haystack, int off, int len) {
+		checkRange(haystack.length(), off, len);
+		return _indexOf(chars(), haystack, off, len);
+	}
+
+	private int _indexOf(char[] b, CharSequence h, int off, int len) {
+		int n = this.len;
+		if (n == 0) {
+			return off;
+		}
+		int m = n - 1;
+		char last = b[m];
+		int[] f = this.fwd;
+		for (int i = off, max = off + len - n; i <= max;) {
+			char c = h.charAt(i + m);
+			if (c == last) {
+				int j = m - 1;
+				while (j >= 0 && h.charAt(i + j) == b[j]) {
+					j--;
+				}
+				if (j < 0) {
+					return i;
+				}
+			}
+			i += f[c & 0xff];
 		}
 		return -1;
 	}
 
-	final static int indexOf(char[] haystack, int hoff, int hlen, char[] needle, int noff, int nlen, int[] work) {
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		for (int i = noff, j = 0; i < nMaxIdx; i++) {
-			int c = needle[i];
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
-		}
-		work[needle[nMaxIdx] >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hByteOff + hBytes - nBytes, i = hByteOff; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteForward(needle, nByteOff + j) == getByteForward(haystack, i + j)) {
-				j--;
-			}
-			if (j < 0) {
-				return i >>> 1;
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteForward(haystack, i)] - 1;
+	/**
+	 * Returns the index of the last occurrence of the needle in the specified
+	 * {@code CharSequence}.
+	 *
+	 * @param haystack the {@code CharSequence} to search.
+	 * @return the index of the last occurrence or {@code -1} if there is none.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 */
+	public int lastIndexOf(CharSequence haystack) {
+		return _lastIndexOf(chars(), haystack, 0, haystack.length());
+	}
+
+	/**
+	 * Returns the index of the last occurrence of the needle within the
+	 * specified range of the {@code CharSequence}.
+	 *
+	 * @param haystack the {@code CharSequence} to search.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @return the index of the last occurrence or {@code -1} if there is none.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public int lastIndexOf(CharSequence haystack, int off, int len) {
+		checkRange(haystack.length(), off, len);
+		return _lastIndexOf(chars(), haystack, off, len);
+	}
+
+	private int _lastIndexOf(char[] b, CharSequence h, int off, int len) {
+		int n = this.len;
+		if (n == 0) {
+			return off + len;
+		}
+		char first = b[0];
+		int[] w = this.bwd;
+		for (int i = off + len - n; i >= off;) {
+			char c = h.charAt(i);
+			if (c == first) {
+				int j = 1;
+				while (j < n && h.charAt(i + j) == b[j]) {
+					j++;
+				}
+				if (j == n) {
+					return i;
+				}
+			}
+			i -= w[c & 0xff];
 		}
 		return -1;
 	}
 
-	final static int indexOf(char[] haystack, int hoff, int hlen, CharSequence needle, int noff, int nlen, int[] work) {
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		for (int i = noff, j = 0; i < nMaxIdx; i++) {
-			int c = needle.charAt(i);
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
-		}
-		work[needle.charAt(nMaxIdx) >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hByteOff + hBytes - nBytes, i = hByteOff; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteForward(needle, nByteOff + j) == getByteForward(haystack, i + j)) {
-				j--;
-			}
-			if (j < 0) {
-				return i >>> 1;
+	/**
+	 * Adds the indices of all (possibly overlapping) occurrences of the needle
+	 * within the specified range of the {@code CharSequence} to the specified
+	 * list, in ascending order.
+	 *
+	 * @param haystack the {@code CharSequence} to search.
+	 * @param off the offset of the range.
+	 * @param len the length of the range.
+	 * @param results the list to which to add the indices.
+	 * @return {@code results}.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public IntList findAll(CharSequence haystack, int off, int len, IntList results) {
+		checkRange(haystack.length(), off, len);
+		Objects.requireNonNull(results);
+		char[] b = chars();
+		for (int i = off, end = off + len; (i = _indexOf(b, haystack, i, end - i)) >= 0; i++) {
+			results.addInt(i);
+			if (i == end) {
+				break;
 			}
-			i += nMaxByteIdx;
-			i -= work[getByteForward(haystack, i)] - 1;
 		}
-		return -1;
+		return results;
 	}
 
-	final static int indexOf(CharSequence haystack, int hoff, int hlen, char[] needle, int noff, int nlen, int[] work) {
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		for (int i = noff, j = 0; i < nMaxIdx; i++) {
-			int c = needle[i];
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
-		}
-		work[needle[nMaxIdx] >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hByteOff + hBytes - nBytes, i = hByteOff; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteForward(needle, nByteOff + j) == getByteForward(haystack, i + j)) {
-				j--;
-			}
-			if (j < 0) {
-				return i >>> 1;
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteForward(haystack, i)] - 1;
+	// searches Latin-1 chars stored one per byte. no bounds checks.
+	int _indexOfLatin1(byte[] h, int off, int len) {
+		char[] b = chars();
+		int n = this.len;
+		if (n == 0) {
+			return off;
+		}
+		int m = n - 1;
+		char last = b[m];
+		int[] f = this.fwd;
+		for (int i = off, max = off + len - n; i <= max;) {
+			int c = h[i + m] & 0xff;
+			if (c == last) {
+				int j = m - 1;
+				while (j >= 0 && (h[i + j] & 0xff) == b[j]) {
+					j--;
+				}
+				if (j < 0) {
+					return i;
+				}
+			}
+			i += f[c];
 		}
 		return -1;
 	}
 
-	final static int indexOf(CharSequence haystack, int hoff, int hlen, CharSequence needle, int noff, int nlen, int[] work) {
-		// pre-process needle
-		int nMaxIdx = noff + nlen - 1;
-		int nBytes = nlen << 1;
-		int hBytes = hlen << 1;
-		int hByteOff = hoff << 1;
-		int nByteOff = noff << 1;
-		int nMaxByteIdx = nBytes - 1;
-		for (int i = noff, j = 0; i < nMaxIdx; i++) {
-			int c = needle.charAt(i);
-			work[c >>> 8] = ++j;
-			work[c & 0xff] = ++j;
-		}
-		work[needle.charAt(nMaxIdx) >>> 8] = nMaxByteIdx;
-		// search
-		for (int max = hByteOff + hBytes - nBytes, i = hByteOff; i <= max;) {
-			int j = nMaxByteIdx;
-			while (j >= 0 && getByteForward(needle, nByteOff + j) == getByteForward(haystack, i + j)) {
-				j--;
-			}
-			if (j < 0) {
-				return i >>> 1;
-			}
-			i += nMaxByteIdx;
-			i -= work[getByteForward(haystack, i)] - 1;
+	// searches Latin-1 chars stored one per byte. no bounds checks.
+	int _lastIndexOfLatin1(byte[] h, int off, int len) {
+		char[] b = chars();
+		int n = this.len;
+		if (n == 0) {
+			return off + len;
+		}
+		char first = b[0];
+		int[] w = this.bwd;
+		for (int i = off + len - n; i >= off;) {
+			int c = h[i] & 0xff;
+			if (c == first) {
+				int j = 1;
+				while (j < n && (h[i + j] & 0xff) == b[j]) {
+					j++;
+				}
+				if (j == n) {
+					return i;
+				}
+			}
+			i -= w[c];
 		}
 		return -1;
 	}
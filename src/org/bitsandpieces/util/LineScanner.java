@@ -5,6 +5,8 @@
  */
 package org.bitsandpieces.util;
 
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Objects;
@@ -17,20 +19,35 @@ import java.util.function.Consumer;
  * {@code "\r\n"} or the end of the input sequence. Every input sequence is thus
  * considered to always contain at least one line, even if empty. The
  * line-separators are not part of the {@code String}s returned by this class.
+ * <p>
+ * Line-separators are found several {@code char}s at a time if the input is a
+ * {@code char[]}, a {@link StringMaker} or a {@code String}. The contents of a
+ * {@code String} are copied in small chunks for this, which never extend past
+ * the scanned range. Other inputs are scanned one {@code char} at a time.
  *
  * <p>
- * This class fully implements an efficient {@code Spliterator}. Due to the
- * nature of the task, the spliterator's size estimate is always
- * {@code Long.MAX_VALUE}, indicating that the cost of calculating a precise
- * measure makes doing so impractical. It also reports {@code ORDERED} and
- * {@code IMMUTABLE}.
+ * This class fully implements an efficient {@code Spliterator}. It reports
+ * {@code ORDERED} and {@code IMMUTABLE}. Its size estimate is the number of
+ * remaining {@code char}s, an upper bound of the number of remaining lines.
+ * If the {@code LineScanner} has been {@link #buildIndex() indexed}, the
+ * spliterator also reports {@code SIZED} and {@code SUBSIZED}, and splits
+ * the remaining lines exactly in half.
+ * <p>
+ * Where lines are mostly inspected and discarded,
+ * {@link #forEachLine(LineConsumer) forEachLine()} and
+ * {@link #forEachLineView(Consumer) forEachLineView()} avoid creating a
+ * {@code String} for every line.
  *
  * @author Jan Kebernik
  */
 public class LineScanner implements Iterable<String> {
 
 	private final CharSequence src;
+	// non-null if scanning a char[]
+	private final char[] array;
 	private final int start, end;
+	// starts of all lines, if indexed
+	private volatile int[] lines;
 
 	/**
 	 * Creates a new {@code LineScanner} for the specified input
@@ -40,6 +57,7 @@ public class LineScanner implements Iterable<String> {
 	 */
 	public LineScanner(CharSequence input) {
 		this.src = input;
+		this.array = null;
 		this.end = input.length();
 		this.start = 0;
 	}
@@ -61,12 +79,47 @@ public class LineScanner implements Iterable<String> {
 			throw new IndexOutOfBoundsException();
 		}
 		this.src = input;
+		this.array = null;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Creates a new {@code LineScanner} for the specified input array.
+	 *
+	 * @param input the array to be scanned.
+	 */
+	public LineScanner(char[] input) {
+		this.src = CharBuffer.wrap(input);
+		this.array = input;
+		this.end = input.length;
+		this.start = 0;
+	}
+
+	/**
+	 * Creates a new {@code LineScanner} for the specified input array.
+	 *
+	 * @param input the array to be scanned.
+	 * @param start start index (inclusive) of the input array.
+	 * @param end the end index (exclusive) of the input array.
+	 * @throws IndexOutOfBoundsException if {@code start} is negative, or
+	 * {@code end} is larger than the length of the input array, or
+	 * {@code start} is larger than {@code end}.
+	 */
+	public LineScanner(char[] input, int start, int end) {
+		int len = end - start;
+		if (start < 0 || len < 0 || start > input.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		this.src = CharBuffer.wrap(input);
+		this.array = input;
 		this.start = start;
 		this.end = end;
 	}
 
 	/**
-	 * The input {@code CharSequence}.
+	 * The input {@code CharSequence}. If this {@code LineScanner} was created
+	 * for an array, the returned {@code CharSequence} wraps that array.
 	 *
 	 * @return the input {@code CharSequence}.
 	 */
@@ -92,61 +145,419 @@ public class LineScanner implements Iterable<String> {
 		return this.end;
 	}
 
+	/**
+	 * Builds an index of the starts of all lines, unless already built. The
+	 * index takes up 4 bytes per line, and allows for random access to lines
+	 * as well as for exactly sized and evenly split spliterators.
+	 *
+	 * @return this {@code LineScanner}.
+	 */
+	public LineScanner buildIndex() {
+		lines();
+		return this;
+	}
+
+	/**
+	 * Returns {@code true} if this {@code LineScanner} has been indexed.
+	 *
+	 * @return {@code true} if this {@code LineScanner} has been indexed.
+	 */
+	public boolean isIndexed() {
+		return this.lines != null;
+	}
+
+	private int[] lines() {
+		int[] a = this.lines;
+		if (a == null) {
+			CharSequence _src = this.src;
+			Breaks b = breaks();
+			int _end = this.end;
+			a = new int[16];
+			int n = 0;
+			for (int off = this.start;;) {
+				if (n == a.length) {
+					a = Arrays.copyOf(a, n << 1);
+				}
+				a[n++] = off;
+				int i = b.next(off, _end);
+				if (i == _end) {
+					break;
+				}
+				off = skip(_src, i, _end);
+			}
+			this.lines = a = Arrays.copyOf(a, n);
+		}
+		return a;
+	}
+
+	/**
+	 * Returns the number of lines. Does not build an index, but uses it if
+	 * present.
+	 *
+	 * @return the number of lines.
+	 */
+	public int lineCount() {
+		int[] a = this.lines;
+		if (a != null) {
+			return a.length;
+		}
+		CharSequence _src = this.src;
+		Breaks b = breaks();
+		int _end = this.end;
+		int n = 1;
+		for (int off = this.start, i; (i = b.next(off, _end)) != _end; n++) {
+			off = skip(_src, i, _end);
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the start index (inclusive) of the specified line in the input
+	 * {@code CharSequence}. Builds an index if necessary.
+	 *
+	 * @param line the index of the line.
+	 * @return the start index (inclusive) of the specified line.
+	 * @throws IndexOutOfBoundsException if there is no such line.
+	 */
+	public int lineStart(int line) {
+		return lines()[line];
+	}
+
+	/**
+	 * Returns the end index (exclusive) of the specified line in the input
+	 * {@code CharSequence}, not including the line-separator. Builds an index
+	 * if necessary.
+	 *
+	 * @param line the index of the line.
+	 * @return the end index (exclusive) of the specified line.
+	 * @throws IndexOutOfBoundsException if there is no such line.
+	 */
+	public int lineEnd(int line) {
+		return lineEnd(lines(), line);
+	}
+
+	private int lineEnd(int[] a, int line) {
+		int s = a[line];	// bounds-check
+		if (++line == a.length) {
+			return this.end;
+		}
+		int e = a[line] - 1;
+		CharSequence _src = this.src;
+		return (e > s && _src.charAt(e) == '\n' && _src.charAt(e - 1) == '\r') ? e - 1 : e;
+	}
+
+	/**
+	 * Returns the specified line. Builds an index if necessary.
+	 *
+	 * @param line the index of the line.
+	 * @return the specified line.
+	 * @throws IndexOutOfBoundsException if there is no such line.
+	 */
+	public String line(int line) {
+		int[] a = lines();
+		return this.src.subSequence(a[line], lineEnd(a, line)).toString();
+	}
+
 	@Override
 	public Iterator<String> iterator() {
-		return new LineIterator(this.src, this.start, this.end);
+		return new LineIterator(this.src, breaks(), this.start, this.end);
 	}
 
 	@Override
 	public Spliterator<String> spliterator() {
-		return new LineSpliterator(this.src, this.start, this.end);
+		int[] a = this.lines;
+		if (a != null) {
+			return new IndexedLineSpliterator(this, a, 0, a.length);
+		}
+		return new LineSpliterator(this, this.start, this.end);
 	}
 
 	@Override
 	public void forEach(Consumer<? super String> action) {
 		Objects.requireNonNull(action);
-		int _off = this.start;
-		boolean _r = false;
-		for (int _idx = this.start; _idx < this.end; _idx++) {
-			switch (this.src.charAt(_idx)) {
-				case '\r':
-					_r = true;
+		forEachLine((CharSequence src, int start, int end) -> action.accept(src.subSequence(start, end).toString()));
+	}
+
+	/**
+	 * Passes the bounds of every line to the specified action, in order. No
+	 * objects are created in the process, which makes this method well suited
+	 * for inspecting lines that are mostly discarded.
+	 *
+	 * @param action the action to be performed for each line.
+	 */
+	public void forEachLine(LineConsumer action) {
+		Objects.requireNonNull(action);
+		CharSequence _src = this.src;
+		Breaks b = breaks();
+		int _end = this.end;
+		for (int off = this.start;;) {
+			int i = b.next(off, _end);
+			action.accept(_src, off, i);
+			if (i == _end) {
+				return;
+			}
+			off = skip(_src, i, _end);
+		}
+	}
+
+	/**
+	 * Passes every line to the specified action, in order. All lines are
+	 * passed as the same {@link Line} instance, which is updated for each
+	 * line, so that no objects are created per line. Lines to be retained
+	 * beyond the action must be copied, e.g. by calling {@code toString()}.
+	 *
+	 * @param action the action to be performed for each line.
+	 */
+	public void forEachLineView(Consumer<? super Line> action) {
+		Objects.requireNonNull(action);
+		Line line = new Line(this.src);
+		forEachLine((CharSequence src, int start, int end) -> action.accept(line.set(start, end)));
+	}
+
+	// returns the start of the line following the line-separator at i
+	private static int skip(CharSequence src, int i, int end) {
+		if (src.charAt(i++) == '\r' && i < end && src.charAt(i) == '\n') {
+			i++;
+		}
+		return i;
+	}
+
+	// creates a new line-separator finder, to be used by a single traversal.
+	private Breaks breaks() {
+		if (this.array != null) {
+			return new ArrayBreaks(this.array);
+		}
+		CharSequence s = this.src;
+		if (s.getClass() == String.class) {
+			return new StringBreaks((String) s);
+		}
+		if (s.getClass() == StringMaker.class) {
+			return new MakerBreaks((StringMaker) s);
+		}
+		return new Breaks(s);
+	}
+
+	private static class Breaks {
+
+		private final CharSequence src;
+
+		Breaks(CharSequence src) {
+			this.src = src;
+		}
+
+		// returns the index of the first '\r' or '\n' in the range, or "to" if there is none
+		int next(int from, int to) {
+			CharSequence s = this.src;
+			for (; from < to; from++) {
+				char c = s.charAt(from);
+				if (c == '\n' || c == '\r') {
 					break;
-				case '\n':
-					if (!_r) {
-						break;
-					}
-					_off++;	// skip \n
-				// FALL-THROUGH
-				default:
-					_r = false;
-					continue;
+				}
+			}
+			return from;
+		}
+	}
+
+	private static final class ArrayBreaks extends Breaks {
+
+		private final char[] array;
+
+		ArrayBreaks(char[] array) {
+			super(null);
+			this.array = array;
+		}
+
+		@Override
+		int next(int from, int to) {
+			return from + FastBytes.INSTANCE.lineLength(this.array, from, to - from);
+		}
+	}
+
+	private static final class MakerBreaks extends Breaks {
+
+		private final StringMaker maker;
+
+		MakerBreaks(StringMaker maker) {
+			super(null);
+			this.maker = maker;
+		}
+
+		@Override
+		int next(int from, int to) {
+			byte[] b = this.maker.bytes;
+			if (b != null) {
+				return from + FastBytes.INSTANCE.lineLength(b, from, to - from);
+			}
+			return from + FastBytes.INSTANCE.lineLength(this.maker.chars, from, to - from);
+		}
+	}
+
+	private static final class StringBreaks extends Breaks {
+
+		private static final int MIN_CHUNK = 64;
+		private static final int MAX_CHUNK = 2048;
+
+		private final String str;
+		// Strings offer no bounded search, so chunks of the range are copied
+		// and tested 4 chars at a time. chunks grow while a line goes on,
+		// so short lines copy little more than themselves.
+		private char[] chunk = new char[MIN_CHUNK];
+
+		StringBreaks(String str) {
+			super(null);
+			this.str = str;
+		}
+
+		@Override
+		int next(int from, int to) {
+			String s = this.str;
+			char[] c = this.chunk;
+			FastBytes fb = FastBytes.INSTANCE;
+			for (int size = MIN_CHUNK; from < to;) {
+				int k = Math.min(to - from, size);
+				if (k > c.length) {
+					this.chunk = c = new char[size];
+				}
+				s.getChars(from, from + k, c, 0);
+				int n = fb.lineLength(c, 0, k);
+				if (n != k) {
+					return from + n;
+				}
+				from += k;
+				size = Math.min(size << 1, MAX_CHUNK);
 			}
-			action.accept(this.src.subSequence(_off, _idx).toString());
-			_off = _idx + 1;
+			return to;
 		}
-		action.accept(this.src.subSequence(_off, this.end).toString());
 	}
 
-	private static class LineItrBase {
+	/**
+	 * Receives the bounds of a line.
+	 */
+	@FunctionalInterface
+	public static interface LineConsumer {
 
-		int off;
-		int idx;
-		boolean r;
-		final int end;
-		final CharSequence src;
+		/**
+		 * Performs this operation on the specified line.
+		 *
+		 * @param src the input {@code CharSequence}.
+		 * @param start the start index (inclusive) of the line.
+		 * @param end the end index (exclusive) of the line, not including
+		 * the line-separator.
+		 */
+		void accept(CharSequence src, int start, int end);
+	}
+
+	/**
+	 * A mutable view of a single line of an input {@code CharSequence}. The
+	 * view is only valid during the action it was passed to, after which it
+	 * may show a different line.
+	 */
+	public static final class Line implements CharSequence {
 
-		LineItrBase(CharSequence src, int start, int end) {
+		private final CharSequence src;
+		private int start, end;
+
+		Line(CharSequence src) {
 			this.src = src;
+		}
+
+		Line set(int start, int end) {
+			this.start = start;
 			this.end = end;
-			this.off = this.idx = start;
+			return this;
+		}
+
+		/**
+		 * The input {@code CharSequence}.
+		 *
+		 * @return the input {@code CharSequence}.
+		 */
+		public CharSequence source() {
+			return this.src;
+		}
+
+		/**
+		 * The start index (inclusive) of this line in the input
+		 * {@code CharSequence}.
+		 *
+		 * @return the start index (inclusive) of this line.
+		 */
+		public int start() {
+			return this.start;
+		}
+
+		/**
+		 * The end index (exclusive) of this line in the input
+		 * {@code CharSequence}.
+		 *
+		 * @return the end index (exclusive) of this line.
+		 */
+		public int end() {
+			return this.end;
+		}
+
+		/**
+		 * Returns {@code true} if this line starts with the specified
+		 * {@code CharSequence}.
+		 *
+		 * @param prefix the prefix.
+		 * @return {@code true} if this line starts with the specified
+		 * {@code CharSequence}.
+		 */
+		public boolean startsWith(CharSequence prefix) {
+			int n = prefix.length();
+			if (n > this.end - this.start) {
+				return false;
+			}
+			CharSequence _src = this.src;
+			for (int i = 0, j = this.start; i < n; i++, j++) {
+				if (_src.charAt(j) != prefix.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int length() {
+			return this.end - this.start;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= this.end - this.start) {
+				throw new IndexOutOfBoundsException("index: " + index + ", length: " + (this.end - this.start));
+			}
+			return this.src.charAt(this.start + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			if (start < 0 || end < start || end > this.end - this.start) {
+				throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + (this.end - this.start));
+			}
+			return this.src.subSequence(this.start + start, this.start + end);
+		}
+
+		@Override
+		public String toString() {
+			return this.src.subSequence(this.start, this.end).toString();
 		}
 	}
 
-	private static final class LineIterator extends LineItrBase implements Iterator<String> {
+	private static final class LineIterator implements Iterator<String> {
+
+		private final CharSequence src;
+		private final Breaks breaks;
+		private final int end;
+		// start of the next line or -1 if all lines have been processed
+		private int idx;
 
-		private LineIterator(CharSequence src, int start, int end) {
-			super(src, start, end);
+		private LineIterator(CharSequence src, Breaks breaks, int start, int end) {
+			this.src = src;
+			this.breaks = breaks;
+			this.end = end;
+			this.idx = start;
 		}
 
 		@Override
@@ -161,215 +572,135 @@ public class LineScanner implements Iterable<String> {
 			if (_idx < 0) {
 				return;
 			}
-			if (_idx == this.end) {
-				this.idx = -1;
-				action.accept("");	// empty line
-				return;
-			}
-			boolean _r = this.r;
-			int _off = this.off;
+			CharSequence _src = this.src;
+			Breaks b = this.breaks;
+			int _end = this.end;
 			try {
-				for (; _idx < this.end; _idx++) {
-					switch (this.src.charAt(_idx)) {
-						case '\r':
-							_r = true;
-							break;
-						case '\n':
-							if (!_r) {
-								break;
-							}
-							_off++;	// skip \n
-						// FALL-THROUGH
-						default:
-							_r = false;
-							continue;
-					}
-					action.accept(this.src.subSequence(_off, _idx).toString());
-					_off = _idx + 1;
+				while (_idx >= 0) {
+					int off = _idx;
+					int i = b.next(off, _end);
+					_idx = i == _end ? -1 : skip(_src, i, _end);
+					action.accept(_src.subSequence(off, i).toString());
 				}
-				_idx = -1;
-				action.accept(this.src.subSequence(_off, this.end).toString());
 			} finally {
-				this.r = _r;
 				this.idx = _idx;
-				this.off = _off;
 			}
 		}
 
 		@Override
 		public String next() {
-			int _idx = this.idx;
-			if (_idx < 0) {
+			int off = this.idx;
+			if (off < 0) {
 				// all lines processed
 				throw new NoSuchElementException();
 			}
-			if (_idx == this.end) {
-				// empty last line (input ends on \r or \n)
-				this.idx = -1;
-				return "";	// empty line
-			}
-			boolean _r = this.r;
-			int _off = this.off;
-			try {
-				for (; _idx < this.end; _idx++) {
-					switch (this.src.charAt(_idx)) {
-						case '\r':
-							_r = true;
-							break;
-						case '\n':
-							if (!_r) {
-								break;
-							}
-							_off++;	// skip \n
-						// FALL-THROUGH
-						default:
-							_r = false;
-							continue;
-					}
-					String s = this.src.subSequence(_off, _idx).toString();
-					_off = ++_idx;
-					return s;
-				}
-				_idx = -1;
-				return this.src.subSequence(_off, this.end).toString();
-			} finally {
-				this.r = _r;
-				this.idx = _idx;
-				this.off = _off;
-			}
+			int _end = this.end;
+			int i = this.breaks.next(off, _end);
+			this.idx = i == _end ? -1 : skip(this.src, i, _end);
+			return this.src.subSequence(off, i).toString();
 		}
 	}
 
-	private static final class LineSpliterator extends LineItrBase implements Spliterator<String> {
+	private static final class LineSpliterator implements Spliterator<String> {
+
+		private final LineScanner scanner;
+		private final CharSequence src;
+		private final int end;
+		private Breaks breaks;
+		// start of the next line or -1 if all lines have been processed
+		private int idx;
 
-		public LineSpliterator(CharSequence src, int start, int end) {
-			super(src, start, end);
+		LineSpliterator(LineScanner scanner, int start, int end) {
+			this.scanner = scanner;
+			this.src = scanner.src;
+			this.breaks = scanner.breaks();
+			this.end = end;
+			this.idx = start;
 		}
 
 		@Override
 		public boolean tryAdvance(Consumer<? super String> action) {
 			Objects.requireNonNull(action);
-			int _idx = this.idx;
-			if (_idx < 0) {
+			int off = this.idx;
+			if (off < 0) {
 				return false;
 			}
-			if (_idx == this.end) {
-				this.idx = -1;
-				action.accept("");
-				return true;
-			}
-			boolean _r = this.r;
-			int _off = this.off;
+			int _end = this.end;
+			int i = this.breaks.next(off, _end);
+			this.idx = i == _end ? -1 : skip(this.src, i, _end);
+			action.accept(this.src.subSequence(off, i).toString());
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super String> action) {
+			Objects.requireNonNull(action);
+			int _idx = this.idx;
+			CharSequence _src = this.src;
+			Breaks b = this.breaks;
+			int _end = this.end;
 			try {
-				for (; _idx < this.end; _idx++) {
-					switch (this.src.charAt(_idx)) {
-						case '\r':
-							_r = true;
-							break;
-						case '\n':
-							if (!_r) {
-								break;
-							}
-							_off++;	// skip \n
-						// FALL-THROUGH
-						default:
-							_r = false;
-							continue;
-					}
-					action.accept(this.src.subSequence(_off, _idx).toString());
-					_off = ++_idx;
-					return true;
+				while (_idx >= 0) {
+					int off = _idx;
+					int i = b.next(off, _end);
+					_idx = i == _end ? -1 : skip(_src, i, _end);
+					action.accept(_src.subSequence(off, i).toString());
 				}
-				_idx = -1;
-				action.accept(this.src.subSequence(_off, this.end).toString());
-				return true;
 			} finally {
-				this.r = _r;
 				this.idx = _idx;
-				this.off = _off;
 			}
 		}
 
 		@Override
 		public Spliterator<String> trySplit() {
-			// find the middle of the remaining source sequence
-			// search left and right for end-of-line,
-			// return spliterator left of nearest separator, while this spliterator skips it
+			// find the line-separator nearest to the middle of the remaining
+			// source sequence, searching right first, then left.
+			// return spliterator left of that separator, while this spliterator skips it
 			int _idx = this.idx;
-			if (_idx < 0 || _idx == this.end) {
+			int _end = this.end;
+			if (_idx < 0 || _idx == _end) {
 				// no additional lines available
 				return null;
 			}
-			// start searching from the middle of this sequence
-			int pivot = _idx + ((this.end - _idx) >>> 1);
-			switch (this.src.charAt(pivot)) {
-				case '\r':
-					// skip over \r or \r\n
-					this.r = false;
-					this.off = this.idx
-							= (++pivot < this.end && this.src.charAt(pivot) == '\n')
-							? pivot + 1 : pivot;
-					// return split left of \r
-					return new LineSpliterator(this.src, _idx, pivot - 1);
-				case '\n':
-					// skip over \n
-					this.r = false;
-					this.off = this.idx = pivot + 1;
-					// return split left of \n or \r\n
-					return new LineSpliterator(this.src, _idx,
-							(--pivot >= _idx && this.src.charAt(pivot) == '\r')
-							? pivot : pivot + 1);
-				default: {
-					// find next \r or \n
-					for (int i = pivot + 1; i < this.end;) {
-						switch (this.src.charAt(i++)) {
-							case '\r':
-								if (i < this.end && this.src.charAt(i) == '\n') {
-									// \r\n combo
-									this.r = false;
-									this.off = this.idx = i + 1;
-									return new LineSpliterator(this.src, _idx, i - 1);
-								} //	single \r
-							// FALL-THROUGH
-							case '\n':
-								this.r = false;
-								this.off = this.idx = i;
-								return new LineSpliterator(this.src, _idx, i - 1);
-							default:
-								break;
-						}
+			CharSequence _src = this.src;
+			int pivot = _idx + ((_end - _idx) >>> 1);
+			if (pivot > _idx && _src.charAt(pivot) == '\n' && _src.charAt(pivot - 1) == '\r') {
+				// do not split \r\n
+				pivot--;
+			}
+			int i = this.breaks.next(pivot, _end);
+			if (i == _end) {
+				// pivot part of last line
+				// find previous \r or \n
+				for (i = pivot - 1; i >= _idx; i--) {
+					char c = _src.charAt(i);
+					if (c == '\r') {
+						break;
 					}
-					// pivot part of last line
-					// find previous \r or \n
-					for (int i = pivot - 1; i >= _idx;) {
-						switch (this.src.charAt(i--)) {
-							case '\n':
-								if (i >= _idx && this.src.charAt(i) == '\r') {
-									// \r\n combo						
-									this.r = false;
-									this.off = this.idx = i + 2;
-									return new LineSpliterator(this.src, _idx, i);
-								} //	single \n
-							// FALL-THROUGH
-							case '\r':
-								this.r = false;
-								this.off = this.idx = i + 2;
-								return new LineSpliterator(this.src, _idx, i + 1);
-							default:
-								break;
+					if (c == '\n') {
+						if (i > _idx && _src.charAt(i - 1) == '\r') {
+							i--;
 						}
+						break;
 					}
+				}
+				if (i < _idx) {
 					// remaining range is a single line
 					// cannot split
 					return null;
 				}
 			}
+			this.idx = skip(_src, i, _end);
+			// the search may have skipped ahead
+			this.breaks = this.scanner.breaks();
+			return new LineSpliterator(this.scanner, _idx, i);
 		}
 
 		@Override
 		public long estimateSize() {
-			// too expensive to calculate
-			return Long.MAX_VALUE;
+			// no more lines than chars, plus the last line
+			int _idx = this.idx;
+			return _idx < 0 ? 0L : this.end - _idx + 1L;
 		}
 
 		@Override
@@ -377,4 +708,70 @@ public class LineScanner implements Iterable<String> {
 			return Spliterator.ORDERED | Spliterator.IMMUTABLE;
 		}
 	}
+
+	private static final class IndexedLineSpliterator implements Spliterator<String> {
+
+		private final LineScanner scanner;
+		private final int[] lines;
+		private int idx;
+		private final int end;
+
+		IndexedLineSpliterator(LineScanner scanner, int[] lines, int start, int end) {
+			this.scanner = scanner;
+			this.lines = lines;
+			this.idx = start;
+			this.end = end;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super String> action) {
+			Objects.requireNonNull(action);
+			int _idx = this.idx;
+			if (_idx == this.end) {
+				return false;
+			}
+			this.idx = _idx + 1;
+			int[] a = this.lines;
+			action.accept(this.scanner.src.subSequence(a[_idx], this.scanner.lineEnd(a, _idx)).toString());
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super String> action) {
+			Objects.requireNonNull(action);
+			int _idx = this.idx;
+			int _end = this.end;
+			int[] a = this.lines;
+			LineScanner s = this.scanner;
+			try {
+				while (_idx < _end) {
+					int i = _idx++;
+					action.accept(s.src.subSequence(a[i], s.lineEnd(a, i)).toString());
+				}
+			} finally {
+				this.idx = _idx;
+			}
+		}
+
+		@Override
+		public Spliterator<String> trySplit() {
+			int _idx = this.idx;
+			int mid = _idx + ((this.end - _idx) >>> 1);
+			if (mid == _idx) {
+				return null;
+			}
+			this.idx = mid;
+			return new IndexedLineSpliterator(this.scanner, this.lines, _idx, mid);
+		}
+
+		@Override
+		public long estimateSize() {
+			return this.end - this.idx;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.SIZED | Spliterator.SUBSIZED;
+		}
+	}
 }
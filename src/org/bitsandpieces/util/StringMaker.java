@@ -5,6 +5,7 @@
  */
 package org.bitsandpieces.util;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 /*
@@ -12,6 +13,16 @@ import java.util.Objects;
  */
 /**
  * StringBuilder alternative that offers efficient support for {@link Format}s.
+ * <p>
+ * Much like {@code String}s on recent VMs, a {@code StringMaker} starts out
+ * storing its contents one byte per char, for as long as all chars are in the
+ * Latin-1 range ({@code '\u0000'} through {@code '\u00FF'}). The contents are
+ * inflated into a {@code char[]} the first time a char above {@code 0xFF} is
+ * added, after which the instance remains inflated.
+ * <p>
+ * {@code float}s and {@code double}s are appended as printed by
+ * {@link DoubleFormat#SHORTEST}, the shortest decimal that reads back as the
+ * same value, which is not always what {@link Double#toString(double)} prints.
  *
  * @author pp
  */
@@ -20,19 +31,33 @@ public class StringMaker implements Appendable, CharSequence {
 	// max array length on some VMs.
 	private static final int MAX_ARRAY_CAPACITY = Integer.MAX_VALUE - 8;
 
-	private static final char[] EMPTY = {};
+	private static final byte[] EMPTY = {};
 	private static final Format DEFAULT = Formats.DEC;
 
+	/**
+	 * The contents, one {@code byte} per char, for as long as every char is
+	 * in the Latin-1 range, or {@code null} once they have been inflated into
+	 * {@link #chars}. Exactly one of {@code bytes} and {@code chars} is
+	 * non-null at any time, and its first {@link #size} elements are the
+	 * contents.
+	 */
+	protected byte[] bytes;
+	/**
+	 * The contents once a char above {@code 0xFF} has been added, or
+	 * {@code null} for as long as they are held by {@link #bytes}.
+	 */
 	protected char[] chars;
 	protected int size;
 	private final Target target = new Target();
+	// Formats write here first while the contents are Latin-1
+	private char[] scratch;
 
 	public StringMaker() {
-		this.chars = EMPTY;
+		this.bytes = EMPTY;
 	}
 
 	public StringMaker(int initalCapacity) {
-		this.chars = new char[initalCapacity];
+		this.bytes = new byte[initalCapacity];
 	}
 
 	public StringMaker clear() {
@@ -58,13 +83,77 @@ public class StringMaker implements Appendable, CharSequence {
 		return (this.chars = b);
 	}
 
+	private byte[] _ensureLatin1(byte[] a, int s, int minCap) {
+		if (minCap < 0) {
+			throw new OutOfMemoryError();
+		}
+		int aLen = a.length;
+		if (minCap <= aLen) {
+			return a;
+		}
+		byte[] b = new byte[newCap(aLen, minCap)];
+		System.arraycopy(a, 0, b, 0, s);
+		return (this.bytes = b);
+	}
+
+	// switches to char storage of the same capacity, keeping the first len chars.
+	private char[] inflate(int len) {
+		byte[] b = this.bytes;
+		char[] a = new char[b.length];
+		for (int i = 0; i < len; i++) {
+			a[i] = (char) (b[i] & 0xff);
+		}
+		this.bytes = null;
+		return (this.chars = a);
+	}
+
+	// copies chars into the byte array for as long as they are Latin-1.
+	// returns the number of chars copied.
+	private static int compress(char[] src, int off, byte[] dest, int destOff, int len) {
+		for (int i = 0; i < len; i++) {
+			char c = src[off + i];
+			if (c > 0xff) {
+				return i;
+			}
+			dest[destOff + i] = (byte) c;
+		}
+		return len;
+	}
+
+	private static int compress(CharSequence src, int off, byte[] dest, int destOff, int len) {
+		for (int i = 0; i < len; i++) {
+			char c = src.charAt(off + i);
+			if (c > 0xff) {
+				return i;
+			}
+			dest[destOff + i] = (byte) c;
+		}
+		return len;
+	}
+
+	private static boolean isLatin1(CharSequence s) {
+		for (int i = 0, n = s.length(); i < n; i++) {
+			if (s.charAt(i) > 0xff) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public StringMaker ensureCapacity(int minCapacity) {
+		byte[] b = this.bytes;
+		if (b != null) {
+			if (minCapacity > b.length) {
+				_ensureLatin1(b, this.size, minCapacity);
+			}
+			return this;
+		}
 		char[] a = this.chars;
 		int aLen = a.length;
 		if (minCapacity > aLen) {
-			char[] b = new char[newCap(aLen, minCapacity)];
-			System.arraycopy(a, 0, b, 0, this.size);
-			this.chars = b;
+			char[] c = new char[newCap(aLen, minCapacity)];
+			System.arraycopy(a, 0, c, 0, this.size);
+			this.chars = c;
 		}
 		// no action if minCapacity <= 0
 		return this;
@@ -116,6 +205,18 @@ public class StringMaker implements Appendable, CharSequence {
 	private void _insert(int s, int index, String x) {
 		int n = x.length();
 		int m = s + n;
+		byte[] b = this.bytes;
+		if (b != null) {
+			b = _ensureLatin1(b, s, m);
+			System.arraycopy(b, index, b, index + n, s - index);
+			int k = compress(x, 0, b, index, n);
+			if (k != n) {
+				// the rest goes into the inflated array
+				x.getChars(k, n, inflate(m), index + k);
+			}
+			this.size = m;
+			return;
+		}
 		char[] a = _ensureInternal(this.chars, s, m);
 		System.arraycopy(a, index, a, index + n, s - index);
 		x.getChars(0, n, a, index);
@@ -171,11 +272,22 @@ public class StringMaker implements Appendable, CharSequence {
 		return this;
 	}
 
-	private void _insert(int s, int index, char[] b, int off, int len) {
+	private void _insert(int s, int index, char[] x, int off, int len) {
 		int m = s + len;
+		byte[] b = this.bytes;
+		if (b != null) {
+			b = _ensureLatin1(b, s, m);
+			System.arraycopy(b, index, b, index + len, s - index);
+			int k = compress(x, off, b, index, len);
+			if (k != len) {
+				System.arraycopy(x, off + k, inflate(m), index + k, len - k);
+			}
+			this.size = m;
+			return;
+		}
 		char[] a = _ensureInternal(this.chars, s, m);
 		System.arraycopy(a, index, a, index + len, s - index);
-		System.arraycopy(b, off, a, index, len);
+		System.arraycopy(x, off, a, index, len);
 		this.size = m;
 	}
 
@@ -232,9 +344,24 @@ public class StringMaker implements Appendable, CharSequence {
 	private void _insert(int s, int index, CharSequence x, int start, int end) {
 		int n = end - start;
 		int m = s + n;
-		@SuppressWarnings("MismatchedReadAndWriteOfArray")
-		char[] a = _ensureInternal(this.chars, s, m);
-		for (int max = index + n; index < max;) {
+		byte[] b = this.bytes;
+		if (b != null) {
+			b = _ensureLatin1(b, s, m);
+			System.arraycopy(b, index, b, index + n, s - index);
+			int k = compress(x, start, b, index, n);
+			if (k == n) {
+				this.size = m;
+				return;
+			}
+			inflate(m);
+			index += k;
+			start += k;
+		} else {
+			char[] a = _ensureInternal(this.chars, s, m);
+			System.arraycopy(a, index, a, index + n, s - index);
+		}
+		char[] a = this.chars;
+		while (start < end) {
 			a[index++] = x.charAt(start++);
 		}
 		this.size = m;
@@ -288,7 +415,12 @@ public class StringMaker implements Appendable, CharSequence {
 	}
 
 	private void _insert(int s, int index, byte x, Format f) {
-		this.size = s + f.copy(this.target, index, x);
+		if (this.bytes == null) {
+			this.size = s + f.copy(this.target, index, x);
+			return;
+		}
+		int n = f.copy(this.target, 0, x);
+		_insert(s, index, this.scratch, 0, n);
 	}
 
 	public StringMaker append(char i, Format f) {
@@ -309,7 +441,12 @@ public class StringMaker implements Appendable, CharSequence {
 	}
 
 	private void _insert(int s, int index, char x, Format f) {
-		this.size = s + f.copy(this.target, index, x);
+		if (this.bytes == null) {
+			this.size = s + f.copy(this.target, index, x);
+			return;
+		}
+		int n = f.copy(this.target, 0, x);
+		_insert(s, index, this.scratch, 0, n);
 	}
 
 	@Override
@@ -330,6 +467,17 @@ public class StringMaker implements Appendable, CharSequence {
 
 	private void _insert(int s, int index, char x) {
 		int m = s + 1;
+		byte[] b = this.bytes;
+		if (b != null) {
+			if (x <= 0xff) {
+				b = _ensureLatin1(b, s, m);
+				System.arraycopy(b, index, b, index + 1, s - index);
+				b[index] = (byte) x;
+				this.size = m;
+				return;
+			}
+			inflate(s);
+		}
 		char[] a = _ensureInternal(this.chars, s, m);
 		System.arraycopy(a, index, a, index + 1, s - index);
 		a[index] = x;
@@ -369,7 +517,12 @@ public class StringMaker implements Appendable, CharSequence {
 	}
 
 	private void _insert(int s, int index, short x, Format f) {
-		this.size = s + f.copy(this.target, index, x);
+		if (this.bytes == null) {
+			this.size = s + f.copy(this.target, index, x);
+			return;
+		}
+		int n = f.copy(this.target, 0, x);
+		_insert(s, index, this.scratch, 0, n);
 	}
 
 	public StringMaker append(int i, Format f) {
@@ -405,7 +558,12 @@ public class StringMaker implements Appendable, CharSequence {
 	}
 
 	private void _insert(int s, int index, int x, Format f) {
-		this.size = s + f.copy(this.target, index, x);
+		if (this.bytes == null) {
+			this.size = s + f.copy(this.target, index, x);
+			return;
+		}
+		int n = f.copy(this.target, 0, x);
+		_insert(s, index, this.scratch, 0, n);
 	}
 
 	public StringMaker append(long i, Format f) {
@@ -441,12 +599,34 @@ public class StringMaker implements Appendable, CharSequence {
 	}
 
 	private void _insert(int s, int index, long x, Format f) {
-		this.size = s + f.copy(this.target, index, x);
+		if (this.bytes == null) {
+			this.size = s + f.copy(this.target, index, x);
+			return;
+		}
+		int n = f.copy(this.target, 0, x);
+		_insert(s, index, this.scratch, 0, n);
+	}
+
+	public StringMaker append(float i, DoubleFormat f) {
+		Objects.requireNonNull(f);
+		int s = this.size;
+		_insert(s, s, i, f);
+		return this;
+	}
+
+	public StringMaker insert(int index, float i, DoubleFormat f) {
+		Objects.requireNonNull(f);
+		int s = this.size;
+		if (index < 0 || index > s) {
+			throw new StringIndexOutOfBoundsException(index);
+		}
+		_insert(s, index, i, f);
+		return this;
 	}
 
 	public StringMaker append(float i) {
 		int s = this.size;
-		_insert(s, s, String.valueOf(i));
+		_insert(s, s, i, DoubleFormat.SHORTEST);
 		return this;
 	}
 
@@ -455,13 +635,39 @@ public class StringMaker implements Appendable, CharSequence {
 		if (index < 0 || index > s) {
 			throw new StringIndexOutOfBoundsException(index);
 		}
-		_insert(s, index, String.valueOf(i));
+		_insert(s, index, i, DoubleFormat.SHORTEST);
+		return this;
+	}
+
+	private void _insert(int s, int index, float x, DoubleFormat f) {
+		if (this.bytes == null) {
+			this.size = s + f.copy(this.target, index, x);
+			return;
+		}
+		int n = f.copy(this.target, 0, x);
+		_insert(s, index, this.scratch, 0, n);
+	}
+
+	public StringMaker append(double i, DoubleFormat f) {
+		Objects.requireNonNull(f);
+		int s = this.size;
+		_insert(s, s, i, f);
+		return this;
+	}
+
+	public StringMaker insert(int index, double i, DoubleFormat f) {
+		Objects.requireNonNull(f);
+		int s = this.size;
+		if (index < 0 || index > s) {
+			throw new StringIndexOutOfBoundsException(index);
+		}
+		_insert(s, index, i, f);
 		return this;
 	}
 
 	public StringMaker append(double i) {
 		int s = this.size;
-		_insert(s, s, String.valueOf(i));
+		_insert(s, s, i, DoubleFormat.SHORTEST);
 		return this;
 	}
 
@@ -470,17 +676,26 @@ public class StringMaker implements Appendable, CharSequence {
 		if (index < 0 || index > s) {
 			throw new StringIndexOutOfBoundsException(index);
 		}
-		_insert(s, index, String.valueOf(i));
+		_insert(s, index, i, DoubleFormat.SHORTEST);
 		return this;
 	}
 
+	private void _insert(int s, int index, double x, DoubleFormat f) {
+		if (this.bytes == null) {
+			this.size = s + f.copy(this.target, index, x);
+			return;
+		}
+		int n = f.copy(this.target, 0, x);
+		_insert(s, index, this.scratch, 0, n);
+	}
+
 	public StringMaker delete(int index, int length) {
 		int s = this.size;
 		int n = s - length;
 		if (index < 0 || length < 0 || index > n) {
 			throw new StringIndexOutOfBoundsException();
 		}
-		_delete(this.chars, index, length, s, n);
+		_delete(index, length, s, n);
 		return this;
 	}
 
@@ -489,21 +704,26 @@ public class StringMaker implements Appendable, CharSequence {
 		if (index < 0 || index >= s) {
 			throw new StringIndexOutOfBoundsException();
 		}
-		_delete(this.chars, index, 1, s, s - 1);
+		_delete(index, 1, s, s - 1);
 		return this;
 	}
 
-	private void _delete(char[] a, int off, int len, int s, int n) {
+	private void _delete(int off, int len, int s, int n) {
 		int m = off + len;
+		Object a = this.bytes != null ? this.bytes : this.chars;
 		System.arraycopy(a, m, a, off, s - m);
 		this.size = n;
 	}
 
-	private int[] work = null;
+	// the most recently searched for String, compiled
+	private Horspool pattern = null;
 
-	private int[] work() {
-		int[] w = this.work;
-		return w == null ? (this.work = new int[256]) : ArrayUtil.fill(w, 0);
+	private Horspool pattern(String str) {
+		Horspool p = this.pattern;
+		if (p == null || !p.matches(str)) {
+			p = this.pattern = Horspool.compile(str);
+		}
+		return p;
 	}
 
 	public int indexOf(char c) {
@@ -524,6 +744,19 @@ public class StringMaker implements Appendable, CharSequence {
 	}
 
 	private int _indexOf(char c, int fromIndex, int s) {
+		byte[] b = this.bytes;
+		if (b != null) {
+			if (c > 0xff) {
+				return -1;
+			}
+			byte x = (byte) c;
+			for (; fromIndex < s; fromIndex++) {
+				if (b[fromIndex] == x) {
+					return fromIndex;
+				}
+			}
+			return -1;
+		}
 		char[] a = this.chars;
 		for (; fromIndex < s; fromIndex++) {
 			if (a[fromIndex] == c) {
@@ -551,6 +784,19 @@ public class StringMaker implements Appendable, CharSequence {
 	}
 
 	private int _lastIndexOf(char c, int fromIndex, int s) {
+		byte[] b = this.bytes;
+		if (b != null) {
+			if (c > 0xff) {
+				return -1;
+			}
+			byte x = (byte) c;
+			for (int i = s - 1; i >= fromIndex; i--) {
+				if (b[i] == x) {
+					return i;
+				}
+			}
+			return -1;
+		}
 		char[] a = this.chars;
 		for (int i = s - 1; i >= fromIndex; i--) {
 			if (a[i] == c) {
@@ -575,7 +821,7 @@ public class StringMaker implements Appendable, CharSequence {
 		if (str.length() == 0) {
 			return fromIndex;
 		}
-		return Horspool.indexOf(this.chars, fromIndex, s - fromIndex, str, 0, str.length(), work());
+		return _indexOf(pattern(str), fromIndex, s);
 	}
 
 	public int indexOf(String str, int fromIndex, int toIndex) {
@@ -583,11 +829,53 @@ public class StringMaker implements Appendable, CharSequence {
 		if (str.length() == 0) {
 			return fromIndex;
 		}
-		return Horspool.indexOf(this.chars, fromIndex, toIndex - fromIndex, str, 0, str.length(), work());
+		return _indexOf(pattern(str), fromIndex, toIndex);
+	}
+
+	/**
+	 * Returns the index of the first occurrence of the specified compiled
+	 * {@code char} needle.
+	 *
+	 * @param pattern the compiled needle.
+	 * @return the index of the first occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 */
+	public int indexOf(Horspool pattern) {
+		return _indexOf(pattern, 0, this.size);
+	}
+
+	/**
+	 * Returns the index of the first occurrence of the specified compiled
+	 * {@code char} needle within the specified range.
+	 *
+	 * @param pattern the compiled needle.
+	 * @param fromIndex the start of the range (inclusive).
+	 * @param toIndex the end of the range (exclusive).
+	 * @return the index of the first occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 */
+	public int indexOf(Horspool pattern, int fromIndex, int toIndex) {
+		rangeCheck(this.size, fromIndex, toIndex);
+		return _indexOf(pattern, fromIndex, toIndex);
+	}
+
+	private int _indexOf(Horspool p, int fromIndex, int toIndex) {
+		byte[] b = this.bytes;
+		if (b == null) {
+			return p.indexOf(this.chars, fromIndex, toIndex - fromIndex);
+		}
+		// needles with non-Latin-1 chars simply never match
+		return p._indexOfLatin1(b, fromIndex, toIndex - fromIndex);
 	}
 
 	public int lastIndexOf(String str) {
-		return lastIndexOf(str, 0);
+		int s = this.size;
+		if (str.length() == 0) {
+			return s;
+		}
+		return _lastIndexOf(pattern(str), 0, s);
 	}
 
 	public int lastIndexOf(String str, int fromIndex) {
@@ -598,7 +886,7 @@ public class StringMaker implements Appendable, CharSequence {
 		if (str.length() == 0) {
 			return s;
 		}
-		return Horspool.lastIndexOf(this.chars, fromIndex, s - fromIndex, str, 0, str.length(), work());
+		return _lastIndexOf(pattern(str), fromIndex, s);
 	}
 
 	public int lastIndexOf(String str, int fromIndex, int toIndex) {
@@ -606,35 +894,92 @@ public class StringMaker implements Appendable, CharSequence {
 		if (str.length() == 0) {
 			return toIndex;
 		}
-		return Horspool.lastIndexOf(this.chars, fromIndex, toIndex - fromIndex, str, 0, str.length(), work());
+		return _lastIndexOf(pattern(str), fromIndex, toIndex);
+	}
+
+	/**
+	 * Returns the index of the last occurrence of the specified compiled
+	 * {@code char} needle.
+	 *
+	 * @param pattern the compiled needle.
+	 * @return the index of the last occurrence or {@code -1} if there is none.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 */
+	public int lastIndexOf(Horspool pattern) {
+		return _lastIndexOf(pattern, 0, this.size);
+	}
+
+	/**
+	 * Returns the index of the last occurrence of the specified compiled
+	 * {@code char} needle within the specified range.
+	 *
+	 * @param pattern the compiled needle.
+	 * @param fromIndex the start of the range (inclusive).
+	 * @param toIndex the end of the range (exclusive).
+	 * @return the index of the last occurrence or {@code -1} if there is none.
+	 * @throws IllegalStateException if the needle consists of {@code byte}s.
+	 */
+	public int lastIndexOf(Horspool pattern, int fromIndex, int toIndex) {
+		rangeCheck(this.size, fromIndex, toIndex);
+		return _lastIndexOf(pattern, fromIndex, toIndex);
+	}
+
+	private int _lastIndexOf(Horspool p, int fromIndex, int toIndex) {
+		byte[] b = this.bytes;
+		if (b == null) {
+			return p.lastIndexOf(this.chars, fromIndex, toIndex - fromIndex);
+		}
+		return p._lastIndexOfLatin1(b, fromIndex, toIndex - fromIndex);
 	}
 
 	@Override
 	public String toString() {
+		byte[] b = this.bytes;
+		if (b != null) {
+			return new String(b, 0, this.size, StandardCharsets.ISO_8859_1);
+		}
 		return String.valueOf(this.chars, 0, this.size);
 	}
 
 	@Override
 	public char charAt(int index) {
 		int s = this.size;
-		if (index < 0 || index > s) {
+		if (index < 0 || index >= s) {
 			throw new StringIndexOutOfBoundsException(index);
 		}
+		byte[] b = this.bytes;
+		if (b != null) {
+			return (char) (b[index] & 0xff);
+		}
 		return this.chars[index];
 	}
 
 	@Override
 	public String subSequence(int start, int end) {
 		rangeCheck(this.size, start, end);
+		byte[] b = this.bytes;
+		if (b != null) {
+			return new String(b, start, end - start, StandardCharsets.ISO_8859_1);
+		}
 		return String.valueOf(this.chars, start, end - start);
 	}
 
 	public StringMaker reverse() {
-		boolean hasSurrogates = false;
 		int s = this.size;
+		byte[] b = this.bytes;
+		if (b != null) {
+			// no surrogates to worry about
+			for (int j = 0, k = s - 1; j < k; j++, k--) {
+				byte bj = b[j];
+				b[j] = b[k];
+				b[k] = bj;
+			}
+			return this;
+		}
+		boolean hasSurrogates = false;
 		char[] a = this.chars;
 		int n = s - 1;
-		for (int j = (n - 1) >>> 1; j >= 0; j--) {
+		for (int j = (n - 1) >> 1; j >= 0; j--) {
 			int k = n - j;
 			char cj = a[j];
 			char ck = a[k];
@@ -665,12 +1010,26 @@ public class StringMaker implements Appendable, CharSequence {
 		int _s = this.size;
 		rangeCheck(_s, start, end);
 		int len = end - start;
+		byte[] b = this.bytes;
+		if (b != null) {
+			if (isLatin1(s)) {
+				int n = s.length();
+				int m = _s + n - len;
+				if (n > len) {
+					b = _ensureLatin1(b, _s, m);
+				}
+				System.arraycopy(b, end, b, start + n, _s - end);
+				compress(s, 0, b, start, n);
+				this.size = m;
+				return this;
+			}
+			inflate(_s);
+		}
 		if (len >= s.length()) {
 			// more chars deleted than inserted
 			int v = len - s.length();
-			char[] a = this.chars;
-			_delete(a, start, v, _s, _s - v);
-			s.getChars(0, s.length(), a, start);
+			_delete(start, v, _s, _s - v);
+			s.getChars(0, s.length(), this.chars, start);
 		} else {
 			// more chars inserted than deleted
 			int m = _s + s.length() - len;
@@ -686,6 +1045,14 @@ public class StringMaker implements Appendable, CharSequence {
 		if (index < 0 || index >= this.size) {
 			throw new StringIndexOutOfBoundsException(index);
 		}
+		byte[] b = this.bytes;
+		if (b != null) {
+			if (ch <= 0xff) {
+				b[index] = (byte) ch;
+				return;
+			}
+			inflate(this.size);
+		}
 		this.chars[index] = ch;
 	}
 
@@ -699,6 +1066,17 @@ public class StringMaker implements Appendable, CharSequence {
 		if (srcBegin > srcEnd) {
 			throw new StringIndexOutOfBoundsException("srcBegin > srcEnd");
 		}
+		byte[] b = this.bytes;
+		if (b != null) {
+			int n = srcEnd - srcBegin;
+			if (dstBegin < 0 || dstBegin > dst.length - n) {
+				throw new ArrayIndexOutOfBoundsException();
+			}
+			for (int i = 0; i < n; i++) {
+				dst[dstBegin + i] = (char) (b[srcBegin + i] & 0xff);
+			}
+			return;
+		}
 		System.arraycopy(this.chars, srcBegin, dst, dstBegin, srcEnd - srcBegin);
 	}
 
@@ -706,6 +1084,14 @@ public class StringMaker implements Appendable, CharSequence {
 
 		@Override
 		public char[] getArray(int off, int len) {
+			if (StringMaker.this.bytes != null) {
+				// checked for Latin-1 chars once the Format is done
+				char[] t = StringMaker.this.scratch;
+				if (t == null || t.length < off + len) {
+					t = StringMaker.this.scratch = new char[Math.max(off + len, 32)];
+				}
+				return t;
+			}
 			int s = StringMaker.this.size;
 			char[] a = _ensureInternal(StringMaker.this.chars, s, s + len);
 			System.arraycopy(a, off, a, off + len, s - off);
@@ -734,6 +1120,15 @@ public class StringMaker implements Appendable, CharSequence {
 		if(srcOff > this.size - len) {
 			return false;
 		}
+		byte[] b = this.bytes;
+		if (b != null) {
+			for (int m = srcOff + len; srcOff < m; srcOff++, destOff++) {
+				if ((b[srcOff] & 0xff) != dest.charAt(destOff)) {
+					return false;
+				}
+			}
+			return true;
+		}
 		char[] a = this.chars;
 		for (int m = srcOff + len; srcOff < m; srcOff++, destOff++) {
 			if (a[srcOff] != dest.charAt(destOff)) {
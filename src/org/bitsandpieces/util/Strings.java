@@ -26,11 +26,23 @@ public final class Strings {
 
 	private static final String FAIL_MESSAGE = "Reflection failed. Falling back on conventional solution.";
 
+	private static final Function<String, char[]> COPY = String::toCharArray;
+	// compact Strings (Java 9+) store their contents as bytes, so there is no
+	// char array to share, and access to String internals is denied anyway.
+	private static final boolean CHAR_VALUE = hasCharValue();
 	// Must be a BiFunction instead of a custom interface, because the 
 	// Lookup would not have access to classes outside the standard (bootstrap) scope.
 	private static final BiFunction<char[], Boolean, String> CONSTRUCTOR = construcor();
 	private static final Function<String, char[]> GETTER = getter();
 
+	private static boolean hasCharValue() {
+		try {
+			return String.class.getDeclaredField("value").getType() == char[].class;
+		} catch (NoSuchFieldException | RuntimeException ex) {
+			return false;
+		}
+	}
+
 	private static MethodHandles.Lookup trustedLookup() throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException {
 		MethodHandles.Lookup caller = MethodHandles.lookup().in(String.class);
 		Field modes = MethodHandles.Lookup.class.getDeclaredField("allowedModes");
@@ -45,6 +57,10 @@ public final class Strings {
 	// thread-safety is not a concern, given that each thread is allowed to 
 	// fail (recoverably) independently
 	private static BiFunction<char[], Boolean, String> construcor() {
+		if (!CHAR_VALUE) {
+			// expected fallback, not worth a warning
+			return (char[] a, Boolean b) -> String.valueOf(a);
+		}
 		try {
 			// create trusted Lookup with access to String internals
 			MethodHandles.Lookup lookup = trustedLookup();
@@ -66,7 +82,7 @@ public final class Strings {
 			throw err;
 		} catch (Throwable ex) {
 			// log recoverable exceptions.
-			Logger.getLogger(Strings.class.getName()).log(Level.WARNING, FAIL_MESSAGE, ex);
+			Logger.getLogger(Strings.class.getName()).log(Level.FINE, FAIL_MESSAGE, ex);
 			return (char[] a, Boolean b) -> String.valueOf(a);
 		}
 	}
@@ -89,6 +105,9 @@ public final class Strings {
 		// Reflection API seems fastest here.
 		// Cannot use lambdas, because private fields cannot be accessed that 
 		// way (in the absence of a getter method).
+		if (!CHAR_VALUE) {
+			return COPY;
+		}
 		try {
 			Field field = String.class.getDeclaredField("value");
 			field.setAccessible(true);
@@ -100,9 +119,10 @@ public final class Strings {
 					return s.toCharArray();
 				}
 			};
-		} catch (NoSuchFieldException | SecurityException ex) {
-			Logger.getLogger(Strings.class.getName()).log(Level.WARNING, FAIL_MESSAGE, ex);
-			return String::toCharArray;
+		} catch (NoSuchFieldException | RuntimeException ex) {
+			// includes SecurityException
+			Logger.getLogger(Strings.class.getName()).log(Level.FINE, FAIL_MESSAGE, ex);
+			return COPY;
 		}
 	}
 
@@ -124,6 +144,11 @@ public final class Strings {
 		return CONSTRUCTOR.apply(a, true);
 	}
 
+	// true if getValue() returns the actual array instead of a copy
+	static boolean sharesValue() {
+		return GETTER != COPY;
+	}
+
 	/**
 	 * Attempts to return the specified String's internal char array. If
 	 * Reflection is disabled, will return a new char array with equal contents.
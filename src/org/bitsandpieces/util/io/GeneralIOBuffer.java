@@ -852,13 +852,15 @@ final class GeneralIOBuffer extends IOBuffer {
 		}
 		this.sb.setLength(0);
 		try {
+			// line lies within a single buffer range so far
+			boolean whole = true;
 			while (true) {
 				int f = _readSeek(p, s);
-				int m = (int) Math.min(this.bufLen, s - p);	// >TODO is that right?
+				int m = (int) Math.min(this.bufLen, f + (s - p));
 				for (int i = f; i < m; i++) {
 					switch (this.buffer[i]) {
 						case '\r': {
-							_decodeNextLine(dec, f, i++ - f, replace);
+							String line = _line(dec, f, i++ - f, replace, whole);
 							// skip over full separator
 							p += (i - f);
 							if (p != s) {
@@ -871,27 +873,23 @@ final class GeneralIOBuffer extends IOBuffer {
 									p++;
 								}
 							} // else: file ends with an '\r'
-							return this.sb.toString();
+							return line;
 						}
 						case '\n': {
-							_decodeNextLine(dec, f, i++ - f, replace);
+							String line = _line(dec, f, i++ - f, replace, whole);
 							p += (i - f);
-							return this.sb.toString();
+							return line;
 						}
 					}
 				}
 				// buffer range contains no separators
 				int n = m - f;
-				_decodeNextLine(dec, f, n, replace);
 				if ((p += n) == s) {
-					// full input range processed
-					if (dec.pendingInput() != 0) {
-						// incomplete code point at end of input sequence
-						this.sb.append('\uFFFD');
-					}
-					// return last line
-					return this.sb.toString();
+					// full input range processed. return last line
+					return _line(dec, f, n, replace, whole);
 				}
+				_decodeNextLine(dec, f, n, replace);
+				whole = false;
 				// continue 
 			}
 		} finally {
@@ -900,6 +898,21 @@ final class GeneralIOBuffer extends IOBuffer {
 		}
 	}
 
+	// decodes the last range of a line and returns the full line
+	private String _line(Decoder dec, int off, int len, String replace, boolean whole) throws IOException {
+		if (whole) {
+			// decode straight into the String
+			return dec.doDecodeToString(this.buffer, off, len, replace);
+		}
+		_decodeNextLine(dec, off, len, replace);
+		if (dec.pendingInput() != 0) {
+			// incomplete code point at end of line
+			dec.dropPending();
+			this.sb.append(replace);
+		}
+		return this.sb.toString();
+	}
+
 	private void _decodeNextLine(Decoder dec, int off, int len, String replace) throws IOException {
 		// decoder will resolve pending input on its own
 		// cannot have pending output because Appendable is boundless
@@ -1265,4 +1278,39 @@ final class GeneralIOBuffer extends IOBuffer {
 			this.pos = pos;
 		}
 	}
+
+	@Override
+	void _forEachWindow(long pos, long end, long s, Window w) throws IOException {
+		try {
+			do {
+				int f = _readSeek(pos, s);
+				int b = ((int) Math.min(end - this.bufPos, this.bufLen)) - f;
+				if (!w.accept(this.buffer, f, b)) {
+					break;
+				}
+				pos += b;
+			} while (pos != end);
+		} finally {
+			this.pos = pos;
+		}
+	}
+
+	@Override
+	void _forEachWindowBackward(long pos, long end, long s, Window w) throws IOException {
+		do {
+			long bpos = this.bufPos;
+			int blen = this.bufLen;
+			if (end <= bpos || end > bpos + blen) {
+				// last byte not buffered. move buffer to end there.
+				_flush(bpos, blen);
+				bpos = Math.max(pos, end - this.bufferSize);
+				_readRebuffer(bpos, bpos, s);
+			}
+			long f = Math.max(pos, bpos);
+			if (!w.accept(this.buffer, (int) (f - bpos), (int) (end - f))) {
+				break;
+			}
+			end = f;
+		} while (end != pos);
+	}
 }
@@ -5,12 +5,22 @@
  */
 package org.bitsandpieces.util.io;
 
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntPredicate;
 import java.util.zip.Inflater;
+import org.bitsandpieces.util.AhoCorasick;
 import org.bitsandpieces.util.Encoding.Decoder;
 import org.bitsandpieces.util.Encoding.Encoder;
+import org.bitsandpieces.util.DoubleFormat;
 import org.bitsandpieces.util.Endian;
+import org.bitsandpieces.util.Format;
+import org.bitsandpieces.util.Horspool;
+import org.bitsandpieces.util.collection.CyclicLongList;
+import org.bitsandpieces.util.collection.primitive.PrimitiveList.LongList;
 
 /**
  * Provides an efficient buffer strategy for an IOAddress, providing
@@ -51,10 +61,27 @@ public abstract class IOBuffer implements AutoCloseable {
 	 */
 	public static final Endian DEFAULT_ENDIAN = Endian.BIG;
 
+	/**
+	 * The minimum number of {@code byte}s searched by each part of a parallel
+	 * search.
+	 */
+	public static final long MIN_PARALLEL_RANGE = 1L << 20;
+
+	// bytes encoded per call to Format.encode(). a multiple of every group size (1 through 8 bytes).
+	private static final int ENCODE_CHUNK = 840 * 10;
+	// letters decoded per call to Format.decode(). a multiple of every group size (8 letters).
+	private static final int DECODE_CHUNK = 8192;
+
 	long pos;
 	long size;
 	final IOSource source;
 	private Endian endian;
+	// lazily created by the text reading methods
+	private Token token;
+	private Field field;
+	private Skipper skipper;
+	// lazily created by the varint writing methods
+	private byte[] varBytes;
 	final AtomicInteger shared;
 
 	IOBuffer(IOSource source) throws IOException {
@@ -1021,6 +1048,112 @@ public abstract class IOBuffer implements AutoCloseable {
 		return _readDouble(pos, pos + 8L, this.size, endian);
 	}
 
+	/**
+	 * Reads and returns an unsigned LEB128 varint at the current position, as
+	 * described in {@link Endian}. The buffer's position is advanced past the
+	 * varint, by between one and ten {@code byte}s.
+	 *
+	 * @return the {@code long} read at the current position.
+	 * @throws IndexOutOfBoundsException if there is not enough input available
+	 * at the current position to complete the operation.
+	 * @throws DataFormatException if the varint is longer than ten
+	 * {@code byte}s. The position is unchanged in this case.
+	 */
+	public final long readVarLong() throws IOException {
+		_ensureOpen();
+		return doReadVarLong();
+	}
+
+	final long doReadVarLong() throws IOException {
+		long p = this.pos;
+		long s = this.size;
+		if (p >= s) {
+			throw new IndexOutOfBoundsException("pos() + 1 > size(). position: " + p + ", size: " + s);
+		}
+		byte b = _readByte(p, p + 1L, s);
+		if (b >= 0) {
+			this.pos = p + 1L;
+			return b;
+		}
+		if (p <= s - 8L) {
+			// one load covers all varints of up to 8 bytes
+			long x = _readLong(p, p + 8L, s, Endian.LITTLE);
+			int k = Endian.getVarLongLength(x);
+			if (k != 0) {
+				this.pos = p + k;
+				return Endian.getVarLong(x);
+			}
+		}
+		long v = 0L;
+		long q = p;
+		for (int shift = 0;; shift += 7) {
+			if (q >= s) {
+				throw new IndexOutOfBoundsException("Truncated varint. position: " + p + ", size: " + s);
+			}
+			if (shift == 70) {
+				throw new DataFormatException("Malformed varint at position: " + p);
+			}
+			b = _readByte(q, q + 1L, s);
+			q++;
+			v |= (b & 0x7fL) << shift;
+			if (b >= 0) {
+				this.pos = q;
+				return v;
+			}
+		}
+	}
+
+	/**
+	 * Reads and returns an unsigned LEB128 varint at the current position,
+	 * truncated to its lowest {@code 32} bits. The buffer's position is
+	 * advanced past the varint.
+	 *
+	 * @return the {@code int} read at the current position.
+	 * @throws IndexOutOfBoundsException if there is not enough input available
+	 * at the current position to complete the operation.
+	 * @throws DataFormatException if the varint is longer than ten
+	 * {@code byte}s. The position is unchanged in this case.
+	 * @see #readVarLong()
+	 */
+	public final int readVarInt() throws IOException {
+		_ensureOpen();
+		return (int) doReadVarLong();
+	}
+
+	/**
+	 * Reads and returns a ZigZag-encoded varint at the current position, as
+	 * written by {@link #writeZigZagVarLong(long)}. The buffer's position is
+	 * advanced past the varint.
+	 *
+	 * @return the {@code long} read at the current position.
+	 * @throws IndexOutOfBoundsException if there is not enough input available
+	 * at the current position to complete the operation.
+	 * @throws DataFormatException if the varint is longer than ten
+	 * {@code byte}s. The position is unchanged in this case.
+	 * @see Endian#unZigZag(long)
+	 */
+	public final long readZigZagVarLong() throws IOException {
+		_ensureOpen();
+		return Endian.unZigZag(doReadVarLong());
+	}
+
+	/**
+	 * Reads and returns a ZigZag-encoded varint at the current position, as
+	 * written by {@link #writeZigZagVarInt(int)}. The buffer's position is
+	 * advanced past the varint.
+	 *
+	 * @return the {@code int} read at the current position.
+	 * @throws IndexOutOfBoundsException if there is not enough input available
+	 * at the current position to complete the operation.
+	 * @throws DataFormatException if the varint is longer than ten
+	 * {@code byte}s. The position is unchanged in this case.
+	 * @see Endian#unZigZag(int)
+	 */
+	public final int readZigZagVarInt() throws IOException {
+		_ensureOpen();
+		return Endian.unZigZag((int) doReadVarLong());
+	}
+
 	/**
 	 * Reads {@code byte}s from the underlying source into the specified array,
 	 * starting at the current position. The {@code IOBuffer}'s position is
@@ -2001,6 +2134,100 @@ public abstract class IOBuffer implements AutoCloseable {
 		return this;
 	}
 
+	/**
+	 * Writes the specified {@code long} as an unsigned LEB128 varint to the
+	 * underlying source at the current position, as described in
+	 * {@link Endian}. The {@code IOBuffer}'s position is advanced by
+	 * {@link Endian#varLongLength(long) Endian.varLongLength(n)} {@code byte}s.
+	 * If the current position is larger than the current size, the source
+	 * will be grown and the resulting gap will be filled with {@code 0}-value
+	 * {@code byte}s.
+	 *
+	 * @param n the {@code long} to write.
+	 * @return this {@code IOBuffer}.
+	 * @throws IndexOutOfBoundsException if no further bytes can be written.
+	 */
+	public final IOBuffer writeVarLong(long n) throws IOException {
+		_ensureOpen();
+		long p = this.pos;
+		long pos_len = p + Endian.varLongLength(n);
+		if (pos_len < 0L) {
+			throw new IndexOutOfBoundsException("pos() + varLongLength(n) > Long.MAX_VALUE: " + p);
+		}
+		return doWriteVarLong(n);
+	}
+
+	final IOBuffer doWriteVarLong(long n) throws IOException {
+		long p = this.pos;
+		if ((n & ~0x7fL) == 0L) {
+			long pos_len = p + 1L;
+			_writeByte((byte) n, p, pos_len);
+			this.pos = pos_len;
+			return this;
+		}
+		byte[] b = this.varBytes;
+		if (b == null) {
+			b = this.varBytes = new byte[10];
+		}
+		int len = Endian.putVarLong(n, b, 0);
+		long pos_len = p + len;
+		_write(p, pos_len, b, 0, len);
+		this.pos = pos_len;
+		return this;
+	}
+
+	/**
+	 * Writes the specified {@code int} as an unsigned LEB128 varint to the
+	 * underlying source at the current position. Negative values are written
+	 * as their unsigned {@code 32}-bit equivalent, taking five {@code byte}s.
+	 * The {@code IOBuffer}'s position is advanced past the varint. If the
+	 * current position is larger than the current size, the source will be
+	 * grown and the resulting gap will be filled with {@code 0}-value
+	 * {@code byte}s.
+	 *
+	 * @param n the {@code int} to write.
+	 * @return this {@code IOBuffer}.
+	 * @throws IndexOutOfBoundsException if no further bytes can be written.
+	 * @see #writeVarLong(long)
+	 */
+	public final IOBuffer writeVarInt(int n) throws IOException {
+		return writeVarLong(n & 0xffffffffL);
+	}
+
+	/**
+	 * Writes the specified {@code long} as a ZigZag-encoded varint to the
+	 * underlying source at the current position, so that values of small
+	 * magnitude take few {@code byte}s regardless of their sign. The
+	 * {@code IOBuffer}'s position is advanced past the varint. If the current
+	 * position is larger than the current size, the source will be grown and
+	 * the resulting gap will be filled with {@code 0}-value {@code byte}s.
+	 *
+	 * @param n the {@code long} to write.
+	 * @return this {@code IOBuffer}.
+	 * @throws IndexOutOfBoundsException if no further bytes can be written.
+	 * @see Endian#zigZag(long)
+	 */
+	public final IOBuffer writeZigZagVarLong(long n) throws IOException {
+		return writeVarLong(Endian.zigZag(n));
+	}
+
+	/**
+	 * Writes the specified {@code int} as a ZigZag-encoded varint to the
+	 * underlying source at the current position, so that values of small
+	 * magnitude take few {@code byte}s regardless of their sign. The
+	 * {@code IOBuffer}'s position is advanced past the varint. If the current
+	 * position is larger than the current size, the source will be grown and
+	 * the resulting gap will be filled with {@code 0}-value {@code byte}s.
+	 *
+	 * @param n the {@code int} to write.
+	 * @return this {@code IOBuffer}.
+	 * @throws IndexOutOfBoundsException if no further bytes can be written.
+	 * @see Endian#zigZag(int)
+	 */
+	public final IOBuffer writeZigZagVarInt(int n) throws IOException {
+		return writeVarLong(Endian.zigZag(n) & 0xffffffffL);
+	}
+
 	/**
 	 * Writes the specified {@code byte}s to the underlying source at the
 	 * current position. The {@code IOBuffer}'s position is advanced by the
@@ -3085,6 +3312,11 @@ public abstract class IOBuffer implements AutoCloseable {
 	 * last {@code byte} is {@code '\r'} or {@code '\n'}. This pseudo-line will
 	 * <em>not</em> be returned by this method.
 	 * <p>
+	 * Line-separators are found by their {@code byte}s, so the
+	 * {@code Decoder}'s {@code Encoding} must encode {@code '\r'} and
+	 * {@code '\n'} as single ASCII {@code byte}s. This excludes the UTF-16 and
+	 * UTF-32 encodings.
+	 * <p>
 	 * Calling this method is equivalent to calling
 	 * {@link #nextLine(Decoder, String) nextLine(dec, "&#92;uFFFD")}.
 	 *
@@ -3093,6 +3325,9 @@ public abstract class IOBuffer implements AutoCloseable {
 	 * is reached.
 	 * @throws NullPointerException if the {@code Decoder} or the replacement
 	 * {@code String} is {@code null}.
+	 * @throws IllegalArgumentException if the {@code Decoder}'s
+	 * {@code Encoding} does not encode line-separators as single ASCII
+	 * {@code byte}s.
 	 * @throws IllegalStateException if the {@code Decoder} has input remaining
 	 * or output pending.
 	 */
@@ -3101,6 +3336,7 @@ public abstract class IOBuffer implements AutoCloseable {
 		if (dec == null) {
 			throw new NullPointerException();
 		}
+		checkLineSeparators(dec);
 		if (dec.inputRemaining() != 0) {
 			throw new IllegalStateException("Decoder has input remaining.");
 		}
@@ -3127,6 +3363,11 @@ public abstract class IOBuffer implements AutoCloseable {
 	 * line at the end of the buffer either if the buffer is empty or if the
 	 * last {@code byte} is {@code '\r'} or {@code '\n'}. This pseudo-line will
 	 * <em>not</em> be returned by this method.
+	 * <p>
+	 * Line-separators are found by their {@code byte}s, so the
+	 * {@code Decoder}'s {@code Encoding} must encode {@code '\r'} and
+	 * {@code '\n'} as single ASCII {@code byte}s. This excludes the UTF-16 and
+	 * UTF-32 encodings.
 	 *
 	 * @param dec the {@code Decoder} used for decoding.
 	 * @param replace the String used to replace malformed or unmappable code
@@ -3135,6 +3376,9 @@ public abstract class IOBuffer implements AutoCloseable {
 	 * is reached.
 	 * @throws NullPointerException if the {@code Decoder} or the replacement
 	 * {@code String} is null.
+	 * @throws IllegalArgumentException if the {@code Decoder}'s
+	 * {@code Encoding} does not encode line-separators as single ASCII
+	 * {@code byte}s.
 	 * @throws IllegalStateException if the {@code Decoder} has input remaining
 	 * or output pending.
 	 */
@@ -3146,6 +3390,7 @@ public abstract class IOBuffer implements AutoCloseable {
 		if (replace == null) {
 			throw new NullPointerException();
 		}
+		checkLineSeparators(dec);
 		if (dec.inputRemaining() != 0) {
 			throw new IllegalStateException("Decoder has input remaining.");
 		}
@@ -3159,6 +3404,501 @@ public abstract class IOBuffer implements AutoCloseable {
 		return _nextLine(dec, replace);
 	}
 
+	/**
+	 * Reads and returns an ASCII decimal {@code int} at the current position.
+	 * The number is an optional leading sign followed by the longest run of
+	 * digits, and is parsed as by
+	 * {@link Format#parseInt(byte[], int, int) Format.DEC.parseInt()},
+	 * directly from the buffered {@code byte}s where possible. The buffer's
+	 * position is advanced past the number.
+	 *
+	 * @return the {@code int} read at the current position.
+	 * @throws NumberFormatException if there is no valid {@code int} at the
+	 * current position, in which case the position is unchanged.
+	 */
+	public final int readDecimalInt() throws IOException {
+		_ensureOpen();
+		return (int) doReadDecimal(Token.INT).longValue;
+	}
+
+	/**
+	 * Reads and returns an ASCII decimal {@code long} at the current
+	 * position. The number is an optional leading sign followed by the
+	 * longest run of digits, and is parsed as by
+	 * {@link Format#parseLong(byte[], int, int) Format.DEC.parseLong()},
+	 * directly from the buffered {@code byte}s where possible. The buffer's
+	 * position is advanced past the number.
+	 *
+	 * @return the {@code long} read at the current position.
+	 * @throws NumberFormatException if there is no valid {@code long} at the
+	 * current position, in which case the position is unchanged.
+	 */
+	public final long readDecimalLong() throws IOException {
+		_ensureOpen();
+		return doReadDecimal(Token.LONG).longValue;
+	}
+
+	/**
+	 * Reads and returns an ASCII decimal {@code double} at the current
+	 * position. The number is the longest run of {@code byte}s that forms
+	 * an optional leading sign followed by either {@code "NaN"},
+	 * {@code "Infinity"} or digits with an optional fraction and exponent,
+	 * such as {@code "-1.5e-3"}. Trailing {@code byte}s that do not complete
+	 * it, such as the {@code 'e'} in {@code "2em"}, are not read. The number
+	 * is parsed as by
+	 * {@link DoubleFormat#parseDouble(byte[], int, int) DoubleFormat.parseDouble()},
+	 * directly from the buffered {@code byte}s where possible. The buffer's
+	 * position is advanced past the number.
+	 *
+	 * @return the {@code double} read at the current position.
+	 * @throws NumberFormatException if there is no valid {@code double} at
+	 * the current position, in which case the position is unchanged.
+	 */
+	public final double readDecimalDouble() throws IOException {
+		_ensureOpen();
+		return doReadDecimal(Token.DOUBLE).doubleValue;
+	}
+
+	final Token doReadDecimal(int kind) throws IOException {
+		Token t = this.token;
+		if (t == null) {
+			t = this.token = new Token();
+		}
+		t.reset(kind);
+		long p = this.pos;
+		long s = this.size;
+		boolean done = false;
+		try {
+			if (p < s) {
+				_forEachWindow(p, s, s, t);
+			}
+			t.finish();
+			done = true;
+			return t;
+		} finally {
+			this.pos = done ? p + t.length : p;
+		}
+	}
+
+	// collects a number and parses it, straight from the window if it ends there
+	static final class Token implements Window {
+
+		static final int INT = 0;
+		static final int LONG = 1;
+		static final int DOUBLE = 2;
+
+		// longer numbers are rejected rather than buffered
+		private static final int MAX_LENGTH = 4096;
+
+		// scanner states
+		private static final int START = 0;
+		private static final int SIGN = 1;		// after the leading sign
+		private static final int WHOLE = 2;		// within the integer digits
+		private static final int FRACTION = 3;	// after the decimal point
+		private static final int EXP = 4;		// after 'e' or 'E'
+		private static final int EXP_SIGN = 5;	// after the exponent's sign
+		private static final int EXP_DIGITS = 6;
+		private static final int WORD = 7;		// within "NaN" or "Infinity"
+		private static final int END = 8;
+
+		private int kind;
+		private int state;
+		private boolean digits;
+		private String word;
+		private int matched;
+		private byte[] scratch = new byte[32];
+		private int collected;
+		private boolean parsed;
+		// bytes scanned, then bytes of the number once it was parsed
+		long length;
+		// bytes scanned up to the end of the last complete number
+		private long valid;
+		long longValue;
+		double doubleValue;
+
+		void reset(int kind) {
+			this.kind = kind;
+			this.state = START;
+			this.digits = false;
+			this.collected = 0;
+			this.parsed = false;
+			this.length = 0L;
+			this.valid = 0L;
+		}
+
+		@Override
+		public boolean accept(byte[] buf, int off, int len) {
+			int st = this.state;
+			int i = off;
+			int end = off + len;
+			while (i < end && (st = next(st, buf[i] & 0xff)) != END) {
+				i++;
+				if (complete(st)) {
+					this.valid = this.length + (i - off);
+				}
+			}
+			this.state = st;
+			int n = i - off;
+			this.length += n;
+			if (this.length > MAX_LENGTH) {
+				throw new NumberFormatException("Number exceeds " + MAX_LENGTH + " bytes.");
+			}
+			if (i == end) {
+				collect(buf, off, n);
+				return true;
+			}
+			if (this.collected == 0) {
+				parse(buf, off, n);
+			} else {
+				collect(buf, off, n);
+				parse(this.scratch, 0, this.collected);
+			}
+			return false;
+		}
+
+		private int next(int st, int c) {
+			boolean digit = c >= '0' && c <= '9';
+			switch (st) {
+				case START:
+					if (c == '-' || c == '+') {
+						return SIGN;
+					}
+				// fall through
+				case SIGN:
+					if (this.kind == DOUBLE) {
+						if (c == 'N' || c == 'I') {
+							this.word = c == 'N' ? "NaN" : "Infinity";
+							this.matched = 1;
+							return WORD;
+						}
+						if (c == '.') {
+							return FRACTION;
+						}
+					}
+				// fall through
+				case WHOLE:
+					if (digit) {
+						this.digits = true;
+						return WHOLE;
+					}
+					if (st != WHOLE || this.kind != DOUBLE) {
+						return END;
+					}
+					if (c == '.') {
+						return FRACTION;
+					}
+					return (c | 0x20) == 'e' ? EXP : END;
+				case FRACTION:
+					if (digit) {
+						this.digits = true;
+						return FRACTION;
+					}
+					return this.digits && (c | 0x20) == 'e' ? EXP : END;
+				case EXP:
+					if (c == '-' || c == '+') {
+						return EXP_SIGN;
+					}
+				// fall through
+				case EXP_SIGN:
+				case EXP_DIGITS:
+					return digit ? EXP_DIGITS : END;
+				case WORD:
+					String w = this.word;
+					int m = this.matched;
+					if (m < w.length() && c == w.charAt(m)) {
+						this.matched = m + 1;
+						return WORD;
+					}
+					return END;
+				default:
+					return END;
+			}
+		}
+
+		private boolean complete(int st) {
+			switch (st) {
+				case WHOLE:
+				case EXP_DIGITS:
+					return true;
+				case FRACTION:
+					return this.digits;
+				case WORD:
+					return this.matched == this.word.length();
+				default:
+					return false;
+			}
+		}
+
+		private void collect(byte[] buf, int off, int len) {
+			int c = this.collected;
+			byte[] a = this.scratch;
+			if (len > a.length - c) {
+				a = this.scratch = Arrays.copyOf(a, Math.min(Math.max(a.length << 1, c + len), MAX_LENGTH));
+			}
+			System.arraycopy(buf, off, a, c, len);
+			this.collected = c + len;
+		}
+
+		// the number ended at the end of the buffer
+		void finish() {
+			if (!this.parsed) {
+				parse(this.scratch, 0, this.collected);
+			}
+		}
+
+		// parses the number at the start of the scanned bytes. without one,
+		// parses all of them to fail with the appropriate exception.
+		private void parse(byte[] buf, int off, int len) {
+			long v = this.valid;
+			if (v != 0L) {
+				len = (int) v;
+				this.length = v;
+			}
+			switch (this.kind) {
+				case INT:
+				case LONG:
+					if (len > 1 && buf[off] == '+') {
+						// Format only knows the minus sign
+						off++;
+						len--;
+					}
+					this.longValue = this.kind == INT
+							? Format.DEC.parseInt(buf, off, len)
+							: Format.DEC.parseLong(buf, off, len);
+					break;
+				default:
+					this.doubleValue = DoubleFormat.parseDouble(buf, off, len);
+			}
+			this.parsed = true;
+		}
+	}
+
+	/**
+	 * Advances the buffer's position by one {@code byte} if the {@code byte}
+	 * at the current position equals the specified delimiter.
+	 *
+	 * @param delim the delimiter to skip.
+	 * @return {@code true} if the delimiter was skipped, {@code false} if the
+	 * buffer has no further {@code byte}s available at its current position,
+	 * or if the {@code byte} at the current position is not the delimiter.
+	 */
+	public final boolean skipDelimiter(byte delim) throws IOException {
+		_ensureOpen();
+		return doSkipDelimiter(delim);
+	}
+
+	final boolean doSkipDelimiter(byte delim) throws IOException {
+		long p = this.pos;
+		long s = this.size;
+		if (p >= s) {
+			return false;
+		}
+		long pos_len = p + 1L;
+		if (_readByte(p, pos_len, s) != delim) {
+			return false;
+		}
+		this.pos = pos_len;
+		return true;
+	}
+
+	/**
+	 * Advances the buffer's position past all consecutive {@code byte}s for
+	 * which the specified predicate returns {@code true}. The predicate is
+	 * passed each {@code byte} as an unsigned value ({@code 0} through
+	 * {@code 255}).
+	 *
+	 * @param skip the predicate to test the {@code byte}s with.
+	 * @return the number of {@code byte}s skipped.
+	 */
+	public final long skipWhile(IntPredicate skip) throws IOException {
+		_ensureOpen();
+		if (skip == null) {
+			throw new NullPointerException();
+		}
+		return doSkipWhile(skip);
+	}
+
+	final long doSkipWhile(IntPredicate skip) throws IOException {
+		long p = this.pos;
+		long s = this.size;
+		if (p >= s) {
+			return 0L;
+		}
+		Skipper k = this.skipper;
+		if (k == null) {
+			k = this.skipper = new Skipper();
+		}
+		k.skip = skip;
+		k.count = 0L;
+		try {
+			_forEachWindow(p, s, s, k);
+		} finally {
+			// don't hold on to the caller's predicate
+			k.skip = null;
+			this.pos = p + k.count;
+		}
+		return k.count;
+	}
+
+	// counts the bytes accepted by a predicate
+	private static final class Skipper implements Window {
+
+		IntPredicate skip;
+		long count;
+
+		@Override
+		public boolean accept(byte[] buf, int off, int len) {
+			IntPredicate t = this.skip;
+			int i = off;
+			int end = off + len;
+			while (i < end && t.test(buf[i] & 0xff)) {
+				i++;
+			}
+			this.count += i - off;
+			return i == end;
+		}
+	}
+
+	/**
+	 * Reads a field of delimited text, such as CSV, at the current position
+	 * without copying it. Adds the position of the first {@code byte} and the
+	 * position after the last {@code byte} of the field's contents to the
+	 * specified list, and advances the buffer's position past the field. The
+	 * delimiter, line break or end of buffer that terminates the field is not
+	 * skipped.
+	 * <p>
+	 * A field that starts with the quote {@code byte} extends to the next
+	 * single quote {@code byte}, which must be followed by the delimiter, a
+	 * line break ({@code '\r'} or {@code '\n'}) or the end of the buffer.
+	 * Within it, delimiters and line breaks are part of the contents, and
+	 * each pair of quote {@code byte}s stands for one quote {@code byte}. The
+	 * surrounding quotes are not part of the contents, but pairs of quotes
+	 * are reported as is. Any other field extends to the next delimiter, line
+	 * break or the end of the buffer.
+	 *
+	 * @param delim the {@code byte} separating fields.
+	 * @param quote the {@code byte} enclosing quoted fields.
+	 * @param bounds the list to which to add the start and end positions of
+	 * the field's contents.
+	 * @return the number of quote pairs within the contents, which need to be
+	 * unescaped if non-zero.
+	 * @throws IllegalArgumentException if the delimiter and the quote are the
+	 * same {@code byte}, or either of them is a line break.
+	 * @throws DataFormatException if a quoted field is not closed, or its
+	 * closing quote is followed by anything but a delimiter, line break or the
+	 * end of the buffer. The position is unchanged in this case.
+	 */
+	public final int readField(byte delim, byte quote, LongList bounds) throws IOException {
+		_ensureOpen();
+		if (bounds == null) {
+			throw new NullPointerException();
+		}
+		if (delim == quote || delim == '\r' || delim == '\n' || quote == '\r' || quote == '\n') {
+			throw new IllegalArgumentException("Illegal delimiter or quote. delim: " + delim + ", quote: " + quote);
+		}
+		return doReadField(delim, quote, bounds);
+	}
+
+	final int doReadField(byte delim, byte quote, LongList bounds) throws IOException {
+		long p = this.pos;
+		long s = this.size;
+		if (p >= s) {
+			bounds.addLong(p);
+			bounds.addLong(p);
+			return 0;
+		}
+		Field f = this.field;
+		if (f == null) {
+			f = this.field = new Field();
+		}
+		f.reset(delim, quote, _readByte(p, p + 1L, s) == quote);
+		boolean done = false;
+		try {
+			_forEachWindow(f.quoted ? p + 1L : p, s, s, f);
+			if (f.quoted && f.state != Field.CLOSED) {
+				throw new DataFormatException("Unterminated quoted field at position " + p);
+			}
+			done = true;
+		} finally {
+			this.pos = done ? p + f.length : p;
+		}
+		if (f.quoted) {
+			bounds.addLong(p + 1L);
+			bounds.addLong(p + f.length - 1L);
+		} else {
+			bounds.addLong(p);
+			bounds.addLong(p + f.length);
+		}
+		return f.escaped;
+	}
+
+	// scans a single field. quoted fields pass through OPEN and CLOSED, possibly more than once.
+	private static final class Field implements Window {
+
+		static final int OPEN = 0;
+		static final int CLOSED = 1;
+
+		byte delim;
+		byte quote;
+		boolean quoted;
+		// within a quoted field: whether the last quote seen may be the closing one
+		int state;
+		// bytes consumed, including quotes
+		long length;
+		int escaped;
+
+		void reset(byte delim, byte quote, boolean quoted) {
+			this.delim = delim;
+			this.quote = quote;
+			this.quoted = quoted;
+			this.state = OPEN;
+			this.length = quoted ? 1L : 0L;
+			this.escaped = 0;
+		}
+
+		@Override
+		public boolean accept(byte[] buf, int off, int len) {
+			byte d = this.delim;
+			int i = off;
+			int end = off + len;
+			boolean more = true;
+			if (!this.quoted) {
+				while (i < end) {
+					byte c = buf[i];
+					if (c == d || c == '\r' || c == '\n') {
+						more = false;
+						break;
+					}
+					i++;
+				}
+			} else {
+				byte q = this.quote;
+				int st = this.state;
+				while (i < end) {
+					byte c = buf[i];
+					if (st == CLOSED) {
+						if (c == q) {
+							// a pair of quotes
+							this.escaped++;
+							st = OPEN;
+						} else if (c == d || c == '\r' || c == '\n') {
+							more = false;
+							break;
+						} else {
+							throw new DataFormatException("Unexpected byte after closing quote: " + c);
+						}
+					} else if (c == q) {
+						st = CLOSED;
+					}
+					i++;
+				}
+				this.state = st;
+			}
+			this.length += i - off;
+			return more;
+		}
+	}
+
 	/**
 	 * Inflates compressed bytes from this buffer to the specified byte-array.
 	 * Returns the number of uncompressed bytes written to the target
@@ -3449,6 +4189,670 @@ public abstract class IOBuffer implements AutoCloseable {
 		return _transfer(s - p, dest, p, s);
 	}
 
+	/**
+	 * Encodes {@code byte}s from this buffer's current position as text in the
+	 * alphabet of the specified {@code Format}, as described by
+	 * {@link Format#encode(byte[], int, int, char[], int) Format.encode()},
+	 * and appends the letters to the specified {@code Appendable}. The
+	 * buffer's position is advanced by the number of {@code byte}s encoded.
+	 * <p>
+	 * Only the last {@code byte}s encoded can end in a partial group of bits.
+	 * Encoding a range in several calls produces the same letters as a single
+	 * call if every call but the last encodes a multiple of {@code 840}
+	 * {@code byte}s.
+	 *
+	 * @param f the {@code Format} whose alphabet to use.
+	 * @param numBytes the maximum number of {@code byte}s to encode.
+	 * @param dest the {@code Appendable} to which to append the letters.
+	 * @return the number of {@code byte}s encoded, possibly {@code 0} if this
+	 * buffer has no further {@code byte}s available at its current position.
+	 * @throws IllegalArgumentException if {@code numBytes} is negative.
+	 * @throws IllegalStateException if the size of the alphabet is
+	 * not a power of two.
+	 */
+	public final long readEncoded(Format f, long numBytes, Appendable dest) throws IOException {
+		_ensureOpen();
+		if (f == null || dest == null) {
+			throw new NullPointerException();
+		}
+		if (numBytes < 0L) {
+			throw new IllegalArgumentException("numBytes < 0: " + numBytes);
+		}
+		return doReadEncoded(f, numBytes, dest);
+	}
+
+	/**
+	 * Encodes all {@code byte}s from this buffer's current position to its
+	 * end as text in the alphabet of the specified {@code Format}, as
+	 * described by
+	 * {@link Format#encode(byte[], int, int, char[], int) Format.encode()},
+	 * and appends the letters to the specified {@code Appendable}. The
+	 * buffer's position is advanced to its end.
+	 *
+	 * @param f the {@code Format} whose alphabet to use.
+	 * @param dest the {@code Appendable} to which to append the letters.
+	 * @return the number of {@code byte}s encoded, possibly {@code 0} if this
+	 * buffer has no further {@code byte}s available at its current position.
+	 * @throws IllegalStateException if the size of the alphabet is
+	 * not a power of two.
+	 */
+	public final long readEncoded(Format f, Appendable dest) throws IOException {
+		_ensureOpen();
+		if (f == null || dest == null) {
+			throw new NullPointerException();
+		}
+		return doReadEncoded(f, Long.MAX_VALUE, dest);
+	}
+
+	final long doReadEncoded(Format f, long numBytes, Appendable dest) throws IOException {
+		long p = this.pos;
+		long s = this.size;
+		// fails for unsupported alphabets
+		char[] out = new char[(int) f.encodedLength(ENCODE_CHUNK)];
+		if (p >= s || numBytes == 0L) {
+			return 0L;
+		}
+		long n = Math.min(numBytes, s - p);
+		EncodeWindow w = new EncodeWindow(f, out, dest);
+		_forEachWindow(p, p + n, s, w);
+		w.flush();
+		return n;
+	}
+
+	// feeds whole chunks to the Format, so that no partial group of bits is encoded early
+	private static final class EncodeWindow implements Window {
+
+		private final Format format;
+		private final char[] out;
+		private final CharBuffer wrapped;
+		private final Appendable dest;
+		private final byte[] stage = new byte[ENCODE_CHUNK];
+		private int staged;
+
+		EncodeWindow(Format format, char[] out, Appendable dest) {
+			this.format = format;
+			this.out = out;
+			this.wrapped = CharBuffer.wrap(out);
+			this.dest = dest;
+		}
+
+		private void encode(byte[] buf, int off, int len) {
+			int n = this.format.encode(buf, off, len, this.out, 0);
+			try {
+				this.dest.append(this.wrapped, 0, n);
+			} catch (java.io.IOException ex) {
+				throw new IOException(ex);
+			}
+		}
+
+		@Override
+		public boolean accept(byte[] buf, int off, int len) {
+			byte[] st = this.stage;
+			while (len > 0) {
+				int k = this.staged;
+				if (k == 0 && len >= ENCODE_CHUNK) {
+					// nothing staged, encode directly from the window
+					encode(buf, off, ENCODE_CHUNK);
+					off += ENCODE_CHUNK;
+					len -= ENCODE_CHUNK;
+					continue;
+				}
+				int m = Math.min(len, ENCODE_CHUNK - k);
+				System.arraycopy(buf, off, st, k, m);
+				off += m;
+				len -= m;
+				if ((k += m) == ENCODE_CHUNK) {
+					encode(st, 0, ENCODE_CHUNK);
+					k = 0;
+				}
+				this.staged = k;
+			}
+			return true;
+		}
+
+		void flush() {
+			if (this.staged != 0) {
+				encode(this.stage, 0, this.staged);
+				this.staged = 0;
+			}
+		}
+	}
+
+	/**
+	 * Decodes the specified letters in the alphabet of the specified
+	 * {@code Format}, as described by
+	 * {@link Format#decode(char[], int, int, byte[], int) Format.decode()},
+	 * and writes the resulting {@code byte}s to the underlying source at the
+	 * current position. The {@code IOBuffer}'s position is advanced by the
+	 * number of {@code byte}s written.
+	 * <p>
+	 * The letters are decoded and written in chunks. If an illegal letter is
+	 * found, the {@code byte}s of the preceding chunks have already been
+	 * written.
+	 *
+	 * @param f the {@code Format} whose alphabet to use.
+	 * @param src the letters to decode.
+	 * @param off the offset into the array.
+	 * @param len the number of letters to decode.
+	 * @return the number of {@code byte}s written.
+	 * @throws IllegalArgumentException if the letters contain a char outside
+	 * of the alphabet, have an illegal length or end in non-zero padding bits.
+	 * @throws IndexOutOfBoundsException if the specified array range is
+	 * illegal or if the position overflows.
+	 * @throws IllegalStateException if the size of the alphabet is
+	 * not a power of two.
+	 */
+	public final int writeDecoded(Format f, char[] src, int off, int len) throws IOException {
+		_ensureOpen();
+		if (f == null || src == null) {
+			throw new NullPointerException();
+		}
+		if (off < 0 || len < 0 || off > src.length - len) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		return doWriteDecoded(f, null, src, off, len);
+	}
+
+	/**
+	 * Decodes the specified letters in the alphabet of the specified
+	 * {@code Format}, as described by
+	 * {@link Format#decode(CharSequence, int, int, byte[], int) Format.decode()},
+	 * and writes the resulting {@code byte}s to the underlying source at the
+	 * current position. The {@code IOBuffer}'s position is advanced by the
+	 * number of {@code byte}s written.
+	 * <p>
+	 * The letters are decoded and written in chunks. If an illegal letter is
+	 * found, the {@code byte}s of the preceding chunks have already been
+	 * written.
+	 *
+	 * @param f the {@code Format} whose alphabet to use.
+	 * @param src the letters to decode.
+	 * @return the number of {@code byte}s written.
+	 * @throws IllegalArgumentException if the letters contain a char outside
+	 * of the alphabet, have an illegal length or end in non-zero padding bits.
+	 * @throws IndexOutOfBoundsException if the position overflows.
+	 * @throws IllegalStateException if the size of the alphabet is
+	 * not a power of two.
+	 */
+	public final int writeDecoded(Format f, CharSequence src) throws IOException {
+		_ensureOpen();
+		if (f == null || src == null) {
+			throw new NullPointerException();
+		}
+		return doWriteDecoded(f, src, null, 0, src.length());
+	}
+
+	// decodes from the array if there is one
+	final int doWriteDecoded(Format f, CharSequence src, char[] a, int off, int len) throws IOException {
+		int n = (int) f.decodedLength(len);
+		long p = this.pos;
+		if (p + n < 0L) {
+			throw new IndexOutOfBoundsException("pos() + len > Long.MAX_VALUE. pos() = " + p + ", len = " + n);
+		}
+		byte[] out = new byte[(int) f.decodedLength(Math.min(len, DECODE_CHUNK))];
+		for (int i = off, end = off + len; i < end;) {
+			int k = Math.min(end - i, DECODE_CHUNK);
+			int m = a != null
+					? f.decode(a, i, k, out, 0)
+					: f.decode(src, i, k, out, 0);
+			doWrite(out, 0, m);
+			i += k;
+		}
+		return n;
+	}
+
+	/**
+	 * Scans the bytes from this buffer's current position to its end using
+	 * the specified {@code Scanner} and adds all matches to the specified
+	 * list, as described by {@link AhoCorasick.Scanner#scan(byte[], int, int, LongList) Scanner.scan()}.
+	 * The buffer's position is advanced by the number of {@code byte}s
+	 * scanned.
+	 * <p>
+	 * The {@code Scanner} retains its state, so that a large buffer may be
+	 * scanned in several calls, or several buffers may be scanned as a single
+	 * stream.
+	 *
+	 * @param scanner the {@code Scanner} to use.
+	 * @param results the list to which to add the matches.
+	 * @return {@code results}.
+	 * @throws IllegalStateException if the keywords of the {@code Scanner}
+	 * consist of {@code char}s.
+	 */
+	public final LongList findAll(AhoCorasick.Scanner scanner, LongList results) throws IOException {
+		_ensureOpen();
+		if (scanner == null || results == null) {
+			throw new NullPointerException();
+		}
+		return doFindAll(scanner, Long.MAX_VALUE, results);
+	}
+
+	/**
+	 * Scans up to the specified number of bytes from this buffer's current
+	 * position using the specified {@code Scanner} and adds all matches to
+	 * the specified list, as described by
+	 * {@link AhoCorasick.Scanner#scan(byte[], int, int, LongList) Scanner.scan()}.
+	 * The buffer's position is advanced by the number of {@code byte}s
+	 * scanned.
+	 * <p>
+	 * The {@code Scanner} retains its state, so that a large buffer may be
+	 * scanned in several calls, or several buffers may be scanned as a single
+	 * stream.
+	 *
+	 * @param scanner the {@code Scanner} to use.
+	 * @param numBytes the maximum number of {@code byte}s to scan.
+	 * @param results the list to which to add the matches.
+	 * @return {@code results}.
+	 * @throws IllegalStateException if the keywords of the {@code Scanner}
+	 * consist of {@code char}s.
+	 */
+	public final LongList findAll(AhoCorasick.Scanner scanner, long numBytes, LongList results) throws IOException {
+		_ensureOpen();
+		if (scanner == null || results == null) {
+			throw new NullPointerException();
+		}
+		if (numBytes < 0L) {
+			throw new IllegalArgumentException("numBytes < 0: " + numBytes);
+		}
+		return doFindAll(scanner, numBytes, results);
+	}
+
+	final LongList doFindAll(AhoCorasick.Scanner scanner, long numBytes, LongList results) throws IOException {
+		long p = this.pos;
+		long s = this.size;
+		if (p < s && numBytes != 0L) {
+			_forEachWindow(p, p + Math.min(numBytes, s - p), s, (byte[] buf, int off, int len) -> {
+				scanner.scan(buf, off, len, results);
+				return true;
+			});
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the position of the first occurrence of the specified needle
+	 * at or after this buffer's current position. The buffer's position is
+	 * unchanged.
+	 *
+	 * @param needle the {@code byte}s to search for.
+	 * @return the position of the first occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalArgumentException if the needle is empty.
+	 */
+	public final long indexOf(byte[] needle) throws IOException {
+		return indexOf(Horspool.compile(needle));
+	}
+
+	/**
+	 * Returns the position of the first occurrence of the specified needle
+	 * at or after this buffer's current position. The buffer's position is
+	 * unchanged.
+	 *
+	 * @param needle the compiled {@code byte}s to search for.
+	 * @return the position of the first occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalArgumentException if the needle is empty.
+	 * @throws IllegalStateException if the needle consists of {@code char}s.
+	 */
+	public final long indexOf(Horspool needle) throws IOException {
+		_ensureOpen();
+		checkNeedle(needle);
+		return doIndexOf(needle, this.pos, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the position of the first occurrence of the specified needle
+	 * within the specified range. The buffer's position is unchanged.
+	 *
+	 * @param needle the {@code byte}s to search for.
+	 * @param from the position from which to search (inclusive).
+	 * @param to the position up to which to search (exclusive). Values beyond
+	 * the end of the buffer are treated like the end of the buffer.
+	 * @return the position of the first occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalArgumentException if the needle is empty.
+	 * @throws IndexOutOfBoundsException if {@code from} is negative or if
+	 * {@code to} is less than {@code from}.
+	 */
+	public final long indexOf(byte[] needle, long from, long to) throws IOException {
+		return indexOf(Horspool.compile(needle), from, to);
+	}
+
+	/**
+	 * Returns the position of the first occurrence of the specified needle
+	 * within the specified range. The buffer's position is unchanged.
+	 *
+	 * @param needle the compiled {@code byte}s to search for.
+	 * @param from the position from which to search (inclusive).
+	 * @param to the position up to which to search (exclusive). Values beyond
+	 * the end of the buffer are treated like the end of the buffer.
+	 * @return the position of the first occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalArgumentException if the needle is empty.
+	 * @throws IllegalStateException if the needle consists of {@code char}s.
+	 * @throws IndexOutOfBoundsException if {@code from} is negative or if
+	 * {@code to} is less than {@code from}.
+	 */
+	public final long indexOf(Horspool needle, long from, long to) throws IOException {
+		_ensureOpen();
+		checkNeedle(needle);
+		checkRange(from, to);
+		return doIndexOf(needle, from, to);
+	}
+
+	final long doIndexOf(Horspool needle, long from, long to) throws IOException {
+		long s = this.size;
+		long end = Math.min(to, s);
+		if (end - from < needle.length()) {
+			return -1L;
+		}
+		long p = this.pos;
+		NeedleSearch ns = new NeedleSearch(needle, from, Long.MAX_VALUE, null);
+		try {
+			_forEachWindow(from, end, s, ns::forward);
+		} finally {
+			this.pos = p;
+		}
+		return ns.found;
+	}
+
+	/**
+	 * Returns the position of the last occurrence of the specified needle at
+	 * or after this buffer's current position. The buffer's position is
+	 * unchanged.
+	 *
+	 * @param needle the {@code byte}s to search for.
+	 * @return the position of the last occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalArgumentException if the needle is empty.
+	 */
+	public final long lastIndexOf(byte[] needle) throws IOException {
+		return lastIndexOf(Horspool.compile(needle));
+	}
+
+	/**
+	 * Returns the position of the last occurrence of the specified needle at
+	 * or after this buffer's current position. The buffer's position is
+	 * unchanged.
+	 *
+	 * @param needle the compiled {@code byte}s to search for.
+	 * @return the position of the last occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalArgumentException if the needle is empty.
+	 * @throws IllegalStateException if the needle consists of {@code char}s.
+	 */
+	public final long lastIndexOf(Horspool needle) throws IOException {
+		_ensureOpen();
+		checkNeedle(needle);
+		return doLastIndexOf(needle, this.pos, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the position of the last occurrence of the specified needle
+	 * within the specified range. The buffer's position is unchanged.
+	 *
+	 * @param needle the {@code byte}s to search for.
+	 * @param from the position from which to search (inclusive).
+	 * @param to the position up to which to search (exclusive). Values beyond
+	 * the end of the buffer are treated like the end of the buffer.
+	 * @return the position of the last occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalArgumentException if the needle is empty.
+	 * @throws IndexOutOfBoundsException if {@code from} is negative or if
+	 * {@code to} is less than {@code from}.
+	 */
+	public final long lastIndexOf(byte[] needle, long from, long to) throws IOException {
+		return lastIndexOf(Horspool.compile(needle), from, to);
+	}
+
+	/**
+	 * Returns the position of the last occurrence of the specified needle
+	 * within the specified range. The buffer's position is unchanged.
+	 *
+	 * @param needle the compiled {@code byte}s to search for.
+	 * @param from the position from which to search (inclusive).
+	 * @param to the position up to which to search (exclusive). Values beyond
+	 * the end of the buffer are treated like the end of the buffer.
+	 * @return the position of the last occurrence or {@code -1} if there is
+	 * none.
+	 * @throws IllegalArgumentException if the needle is empty.
+	 * @throws IllegalStateException if the needle consists of {@code char}s.
+	 * @throws IndexOutOfBoundsException if {@code from} is negative or if
+	 * {@code to} is less than {@code from}.
+	 */
+	public final long lastIndexOf(Horspool needle, long from, long to) throws IOException {
+		_ensureOpen();
+		checkNeedle(needle);
+		checkRange(from, to);
+		return doLastIndexOf(needle, from, to);
+	}
+
+	final long doLastIndexOf(Horspool needle, long from, long to) throws IOException {
+		long s = this.size;
+		long end = Math.min(to, s);
+		if (end - from < needle.length()) {
+			return -1L;
+		}
+		NeedleSearch ns = new NeedleSearch(needle, end, Long.MAX_VALUE, null);
+		_forEachWindowBackward(from, end, s, ns::backward);
+		return ns.found;
+	}
+
+	/**
+	 * Adds the positions of all (possibly overlapping) occurrences of the
+	 * specified needle at or after this buffer's current position to the
+	 * specified list, in ascending order. The buffer's position is unchanged.
+	 *
+	 * @param needle the {@code byte}s to search for.
+	 * @param results the list to which to add the positions.
+	 * @return {@code results}.
+	 * @throws IllegalArgumentException if the needle is empty.
+	 */
+	public final LongList findAll(byte[] needle, LongList results) throws IOException {
+		return findAll(Horspool.compile(needle), results);
+	}
+
+	/**
+	 * Adds the positions of all (possibly overlapping) occurrences of the
+	 * specified needle at or after this buffer's current position to the
+	 * specified list, in ascending order. The buffer's position is unchanged.
+	 *
+	 * @param needle the compiled {@code byte}s to search for.
+	 * @param results the list to which to add the positions.
+	 * @return {@code results}.
+	 * @throws IllegalArgumentException if the needle is empty.
+	 * @throws IllegalStateException if the needle consists of {@code char}s.
+	 */
+	public final LongList findAll(Horspool needle, LongList results) throws IOException {
+		_ensureOpen();
+		checkNeedle(needle);
+		if (results == null) {
+			throw new NullPointerException();
+		}
+		return doFindAll(needle, this.pos, Long.MAX_VALUE, Long.MAX_VALUE, results);
+	}
+
+	/**
+	 * Adds the positions of all (possibly overlapping) occurrences of the
+	 * specified needle within the specified range to the specified list, in
+	 * ascending order. The buffer's position is unchanged.
+	 *
+	 * @param needle the {@code byte}s to search for.
+	 * @param from the position from which to search (inclusive).
+	 * @param to the position up to which to search (exclusive). Values beyond
+	 * the end of the buffer are treated like the end of the buffer.
+	 * @param results the list to which to add the positions.
+	 * @return {@code results}.
+	 * @throws IllegalArgumentException if the needle is empty.
+	 * @throws IndexOutOfBoundsException if {@code from} is negative or if
+	 * {@code to} is less than {@code from}.
+	 */
+	public final LongList findAll(byte[] needle, long from, long to, LongList results) throws IOException {
+		return findAll(Horspool.compile(needle), from, to, results);
+	}
+
+	/**
+	 * Adds the positions of all (possibly overlapping) occurrences of the
+	 * specified needle within the specified range to the specified list, in
+	 * ascending order. The buffer's position is unchanged.
+	 *
+	 * @param needle the compiled {@code byte}s to search for.
+	 * @param from the position from which to search (inclusive).
+	 * @param to the position up to which to search (exclusive). Values beyond
+	 * the end of the buffer are treated like the end of the buffer.
+	 * @param results the list to which to add the positions.
+	 * @return {@code results}.
+	 * @throws IllegalArgumentException if the needle is empty.
+	 * @throws IllegalStateException if the needle consists of {@code char}s.
+	 * @throws IndexOutOfBoundsException if {@code from} is negative or if
+	 * {@code to} is less than {@code from}.
+	 */
+	public final LongList findAll(Horspool needle, long from, long to, LongList results) throws IOException {
+		_ensureOpen();
+		checkNeedle(needle);
+		checkRange(from, to);
+		if (results == null) {
+			throw new NullPointerException();
+		}
+		return doFindAll(needle, from, to, Long.MAX_VALUE, results);
+	}
+
+	// reports occurrences in [from, to) starting before limit
+	final LongList doFindAll(Horspool needle, long from, long to, long limit, LongList results) throws IOException {
+		long s = this.size;
+		long end = Math.min(to, s);
+		if (end - from < needle.length()) {
+			return results;
+		}
+		long p = this.pos;
+		NeedleSearch ns = new NeedleSearch(needle, from, limit, results);
+		try {
+			_forEachWindow(from, end, s, ns::forward);
+		} finally {
+			this.pos = p;
+		}
+		return results;
+	}
+
+	/**
+	 * Adds the positions of all (possibly overlapping) occurrences of the
+	 * specified needle within the specified range to the specified list, in
+	 * ascending order. The buffer's position is unchanged.
+	 * <p>
+	 * The range is split into up to {@code parallelism} parts of at least
+	 * {@value #MIN_PARALLEL_RANGE} {@code byte}s, which are searched
+	 * concurrently in the {@link ForkJoinPool#commonPool() common pool}, each
+	 * by its own sibling buffer. Neighbouring parts overlap by
+	 * {@code needle.length() - 1} {@code byte}s, so that no occurrence is
+	 * missed. The buffer must not be modified until this method returns.
+	 *
+	 * @param needle the compiled {@code byte}s to search for.
+	 * @param from the position from which to search (inclusive).
+	 * @param to the position up to which to search (exclusive). Values beyond
+	 * the end of the buffer are treated like the end of the buffer.
+	 * @param parallelism the maximum number of parts to search concurrently.
+	 * @param results the list to which to add the positions.
+	 * @return {@code results}.
+	 * @throws IllegalArgumentException if the needle is empty or if
+	 * {@code parallelism} is less than {@code 1}.
+	 * @throws IllegalStateException if the needle consists of {@code char}s.
+	 * @throws IndexOutOfBoundsException if {@code from} is negative or if
+	 * {@code to} is less than {@code from}.
+	 */
+	public final LongList findAll(Horspool needle, long from, long to, int parallelism, LongList results) throws IOException {
+		_ensureOpen();
+		checkNeedle(needle);
+		checkRange(from, to);
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism < 1: " + parallelism);
+		}
+		if (results == null) {
+			throw new NullPointerException();
+		}
+		return doFindAllParallel(needle, from, to, parallelism, results);
+	}
+
+	final LongList doFindAllParallel(Horspool needle, long from, long to, int parallelism, LongList results) throws IOException {
+		long end = Math.min(to, this.size);
+		long len = end - from;
+		int k = (int) Math.min(parallelism, len / MIN_PARALLEL_RANGE);
+		if (k < 2) {
+			return doFindAll(needle, from, to, Long.MAX_VALUE, results);
+		}
+		int n = needle.length();
+		long part = len / k;
+		IOBuffer[] siblings = new IOBuffer[k - 1];
+		ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[k - 1];
+		try {
+			// siblings must be created while this buffer is not in use
+			for (int i = 0; i < siblings.length; i++) {
+				siblings[i] = createSibling();
+			}
+			for (int i = 0; i < tasks.length; i++) {
+				IOBuffer b = siblings[i];
+				long a = from + part * (i + 1);
+				long z = i == tasks.length - 1 ? end : a + part;
+				tasks[i] = ForkJoinPool.commonPool().submit(() -> b.doFindAll(needle, a, Math.min(end, z + n - 1), z, new CyclicLongList()));
+			}
+			// the first part is searched by this buffer
+			doFindAll(needle, from, Math.min(end, from + part + n - 1), from + part, results);
+			for (ForkJoinTask<?> t : tasks) {
+				LongList r = (LongList) t.join();
+				for (int j = 0, m = r.size(); j < m; j++) {
+					results.addLong(r.getLong(j));
+				}
+			}
+			return results;
+		} finally {
+			for (ForkJoinTask<?> t : tasks) {
+				if (t != null) {
+					t.cancel(false);
+					t.quietlyJoin();
+				}
+			}
+			IOException ex = null;
+			for (IOBuffer b : siblings) {
+				if (b != null) {
+					try {
+						b.close();
+					} catch (IOException e) {
+						ex = e;
+					}
+				}
+			}
+			if (ex != null) {
+				throw ex;
+			}
+		}
+	}
+
+	private static void checkNeedle(Horspool needle) {
+		if (needle.length() == 0) {
+			throw new IllegalArgumentException("Empty needle.");
+		}
+	}
+
+	// lines are split at '\r' and '\n' bytes, which is only correct for
+	// encodings that never use these bytes for anything else.
+	static void checkLineSeparators(Decoder dec) {
+		switch (dec.encoding()) {
+			case UTF_16LE:
+			case UTF_16BE:
+			case UTF_32LE:
+			case UTF_32BE:
+				throw new IllegalArgumentException("Line-separators are not single bytes in " + dec.encoding());
+			default:
+		}
+	}
+
+	private static void checkRange(long from, long to) {
+		if (from < 0L) {
+			throw new IndexOutOfBoundsException("from < 0: " + from);
+		}
+		if (to < from) {
+			throw new IndexOutOfBoundsException("to < from. from: " + from + ", to: " + to);
+		}
+	}
+
 	///////////////////////////////////////////////////////////////
 	// IMPL METHODS
 	/////////////////////////////////////////////////////////////// 
@@ -3496,6 +4900,19 @@ public abstract class IOBuffer implements AutoCloseable {
 	abstract int _inflateTo(Inflater inf, int len, long pos) throws IOException;
 	//
 	abstract long _transfer(long numBytes, IOBuffer dest, long pos, long s) throws IOException;
+	// hands [pos, end) to the window one buffered chunk at a time, until the window returns false.
+	// advances the position past every chunk accepted.
+	abstract void _forEachWindow(long pos, long end, long s, Window w) throws IOException;
+	// hands [pos, end) to the window one buffered chunk at a time, last chunk first, until the
+	// window returns false. the position is unchanged.
+	abstract void _forEachWindowBackward(long pos, long end, long s, Window w) throws IOException;
+
+	// receives a range of buffered bytes, which must not be modified.
+	@FunctionalInterface
+	interface Window {
+
+		boolean accept(byte[] buf, int off, int len);
+	}
 
 	// must ALWAYS call closeSource()
 	@Override
@@ -0,0 +1,129 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.bitsandpieces.util.io;
+
+import org.bitsandpieces.util.Horspool;
+import org.bitsandpieces.util.collection.primitive.PrimitiveList.LongList;
+
+/**
+ * Searches for a needle in consecutive buffer windows, including occurrences
+ * that straddle two or more windows. The last (or, searching backwards, the
+ * first) {@code needle.length() - 1} bytes seen are carried over and searched
+ * together with the start (or end) of the next window.
+ *
+ * @author Jan Kebernik
+ */
+final class NeedleSearch {
+
+	private final Horspool needle;
+	private final int m;
+	// forward: the carry, followed by the start of the next window.
+	// backward: the end of the next window, followed by the carry at offset m.
+	private final byte[] stitch;
+	// occurrences must start before this position
+	private final long limit;
+	// all occurrences or null if only the first one is of interest
+	private final LongList results;
+	private int carry;
+	// forward: the position of the next window. backward: the end of the next window.
+	private long pos;
+	// the first (or last) occurrence found
+	long found = -1L;
+
+	NeedleSearch(Horspool needle, long pos, long limit, LongList results) {
+		int n = needle.length();
+		this.needle = needle;
+		this.m = n - 1;
+		this.stitch = new byte[(n - 1) << 1];
+		this.pos = pos;
+		this.limit = limit;
+		this.results = results;
+	}
+
+	private boolean hit(long at) {
+		if (at >= this.limit) {
+			return false;
+		}
+		LongList r = this.results;
+		if (r == null) {
+			this.found = at;
+			return false;
+		}
+		r.addLong(at);
+		return true;
+	}
+
+	boolean forward(byte[] buf, int off, int len) {
+		Horspool h = this.needle;
+		byte[] st = this.stitch;
+		int m = this.m;
+		int c = this.carry;
+		long p = this.pos;
+		if (c != 0) {
+			// occurrences starting in the carry
+			int k = Math.min(m, len);
+			System.arraycopy(buf, off, st, c, k);
+			for (int i = 0; (i = h.indexOf(st, i, c + k - i)) >= 0; i++) {
+				if (!hit(p - c + i)) {
+					return false;
+				}
+			}
+		}
+		for (int i = off, end = off + len; (i = h.indexOf(buf, i, end - i)) >= 0; i++) {
+			if (!hit(p + (i - off))) {
+				return false;
+			}
+		}
+		// carry over the last m bytes
+		if (len >= m) {
+			System.arraycopy(buf, off + len - m, st, 0, m);
+			this.carry = m;
+		} else {
+			int keep = Math.min(c, m - len);
+			System.arraycopy(st, c - keep, st, 0, keep);
+			System.arraycopy(buf, off, st, keep, len);
+			this.carry = keep + len;
+		}
+		this.pos = p + len;
+		return true;
+	}
+
+	// only ever looks for the last occurrence
+	boolean backward(byte[] buf, int off, int len) {
+		Horspool h = this.needle;
+		byte[] st = this.stitch;
+		int m = this.m;
+		int c = this.carry;
+		long e = this.pos;
+		if (c != 0) {
+			// occurrences ending in the carry
+			int k = Math.min(m, len);
+			System.arraycopy(buf, off + len - k, st, m - k, k);
+			int i = h.lastIndexOf(st, m - k, k + c);
+			if (i >= 0) {
+				this.found = e - m + i;
+				return false;
+			}
+		}
+		int i = h.lastIndexOf(buf, off, len);
+		if (i >= 0) {
+			this.found = e - len + (i - off);
+			return false;
+		}
+		// carry over the first m bytes
+		if (len >= m) {
+			System.arraycopy(buf, off, st, m, m);
+			this.carry = m;
+		} else {
+			int keep = Math.min(c, m - len);
+			System.arraycopy(st, m, st, m + len, keep);
+			System.arraycopy(buf, off, st, m, len);
+			this.carry = keep + len;
+		}
+		this.pos = e - len;
+		return true;
+	}
+}
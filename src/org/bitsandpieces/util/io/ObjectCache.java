@@ -35,7 +35,7 @@ import java.util.function.Supplier;
  *
  * @author Jan Kebernik
  */
-class ObjectCache<T> {
+public class ObjectCache<T> {
 
 	// uses a very simple concurrent linked stack as the internal data strucure.
 	// 
@@ -0,0 +1,330 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.bitsandpieces.util.io;
+
+import org.bitsandpieces.util.Encoding.Decoder;
+import org.bitsandpieces.util.zip.OpenInflater;
+
+/**
+ * Reads compressed text from an {@link IOBuffer} in a single pass. Compressed
+ * bytes are inflated into a shared window, which is handed to a
+ * {@link Decoder} directly, so that no uncompressed byte is copied more than
+ * once before it is decoded into {@code char}s.
+ * <p>
+ * Since the {@link OpenInflater} automatically detects GZIP-formatted data,
+ * this class can read both ZLIB and GZIP compressed text (or raw DEFLATE data,
+ * if the inflater was created with {@code nowrap}).
+ * <p>
+ * A {@code TextInflater} takes exclusive control of the buffer, inflater and
+ * decoder until it is closed. Upon reaching the end of the compressed stream
+ * (or upon being closed), the buffer's position is set to the first byte
+ * following the consumed compressed data. Closing a {@code TextInflater} does
+ * not close the buffer.
+ * <p>
+ * Malformed or unmappable input is replaced with {@code '&#92;uFFFD'}.
+ * <p>
+ * Line-separators are found by their {@code byte}s, so the decoder's
+ * {@code Encoding} must encode {@code '\r'} and {@code '\n'} as single ASCII
+ * {@code byte}s. This excludes the UTF-16 and UTF-32 encodings.
+ *
+ * @author Jan Kebernik
+ */
+public final class TextInflater implements AutoCloseable {
+
+	private static final byte[] EMPTY = {};
+
+	private final IOBuffer src;
+	private final OpenInflater inf;
+	private final Decoder dec;
+	private final StringBuilder sb;
+
+	private byte[] in;
+	private byte[] win;
+	private int winOff, winLen;
+	private boolean eof;
+	// last line ended with '\r', which may be followed by '\n'
+	private boolean skipLF;
+	// second char of a pair that did not fit into the last read, or -1
+	private int held = -1;
+	private char[] pair;
+
+	/**
+	 * Creates a new {@code TextInflater} reading compressed text from the
+	 * specified buffer, starting at its current position.
+	 *
+	 * @param src the buffer to read compressed bytes from.
+	 * @param inf the inflater used to decompress the bytes.
+	 * @param dec the decoder used to decode the decompressed bytes.
+	 * @throws IllegalArgumentException if the {@code Decoder}'s
+	 * {@code Encoding} does not encode line-separators as single ASCII
+	 * {@code byte}s.
+	 * @throws IllegalStateException if the {@code Decoder} has input remaining
+	 * or output pending.
+	 */
+	public TextInflater(IOBuffer src, OpenInflater inf, Decoder dec) {
+		if (src == null || inf == null || dec == null) {
+			throw new NullPointerException();
+		}
+		IOBuffer.checkLineSeparators(dec);
+		if (dec.inputRemaining() != 0) {
+			throw new IllegalStateException("Decoder has input remaining.");
+		}
+		if (dec.pendingOutput() != 0) {
+			throw new IllegalStateException("Decoder has pending output.");
+		}
+		src._ensureOpen();
+		this.src = src;
+		this.inf = inf;
+		this.dec = dec;
+		this.sb = new StringBuilder();
+		this.in = BufferCache.requestBuffer();
+		this.win = BufferCache.requestBuffer();
+	}
+
+	/**
+	 * Decodes the next available line of text, with the same semantics as
+	 * {@link IOBuffer#nextLine(Decoder)}.
+	 *
+	 * @return the next available line or {@code null} if the end of the
+	 * compressed stream is reached.
+	 */
+	public String nextLine() {
+		return nextLine("\uFFFD");
+	}
+
+	/**
+	 * Decodes the next available line of text, with the same semantics as
+	 * {@link IOBuffer#nextLine(Decoder, String)}.
+	 *
+	 * @param replace the String used to replace malformed or unmappable code
+	 * points.
+	 * @return the next available line or {@code null} if the end of the
+	 * compressed stream is reached.
+	 */
+	public String nextLine(String replace) {
+		if (replace == null) {
+			throw new NullPointerException();
+		}
+		ensureOpen();
+		StringBuilder b = this.sb;
+		b.setLength(0);
+		boolean any = false;
+		if (this.held >= 0) {
+			b.append((char) this.held);
+			this.held = -1;
+			any = true;
+		}
+		while (true) {
+			if (this.winOff == this.winLen && !fill()) {
+				if (!any) {
+					return null;
+				}
+				if (this.dec.pendingInput() != 0) {
+					// incomplete code point at end of input sequence
+					this.dec.dropPending();
+					b.append(replace);
+				}
+				return b.toString();
+			}
+			byte[] w = this.win;
+			int f = this.winOff;
+			int m = this.winLen;
+			if (this.skipLF) {
+				this.skipLF = false;
+				if (w[f] == '\n') {
+					this.winOff = ++f;
+					continue;
+				}
+			}
+			any = true;
+			for (int i = f; i < m; i++) {
+				byte c = w[i];
+				if (c == '\r' || c == '\n') {
+					decode(w, f, i - f, replace);
+					this.winOff = i + 1;
+					if (c == '\r') {
+						if (i + 1 < m) {
+							if (w[i + 1] == '\n') {
+								this.winOff = i + 2;
+							}
+						} else {
+							// need to see the next byte first
+							this.skipLF = true;
+						}
+					}
+					return b.toString();
+				}
+			}
+			// window contains no separators
+			decode(w, f, m - f, replace);
+			this.winOff = m;
+		}
+	}
+
+	/**
+	 * Decodes up to {@code len} {@code char}s into the specified array.
+	 *
+	 * @param dest the array into which to decode.
+	 * @param off the offset into the array.
+	 * @param len the maximum number of {@code char}s to decode.
+	 * @return the number of {@code char}s decoded, or {@code -1} if the end of
+	 * the compressed stream is reached. If the last code point does not fit
+	 * into the remaining space, its first {@code char} is decoded and the
+	 * second is returned first by the next call.
+	 */
+	public int read(char[] dest, int off, int len) {
+		if (off < 0 || len < 0 || off > dest.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		ensureOpen();
+		if (len == 0) {
+			return 0;
+		}
+		Decoder d = this.dec;
+		int x = 0;
+		if (this.held >= 0) {
+			dest[off] = (char) this.held;
+			this.held = -1;
+			x = 1;
+		}
+		while (x != len) {
+			if (this.winOff == this.winLen && !fill()) {
+				if (d.pendingInput() != 0) {
+					d.dropPending();
+					dest[off + x++] = '\uFFFD';
+				}
+				return x == 0 ? -1 : x;
+			}
+			this.skipLF = false;
+			d.doSetInput(this.win, this.winOff, this.winLen - this.winOff);
+			long b = d.bytesConsumed();
+			int n = d.doDecode(dest, off + x, len - x, Integer.MAX_VALUE);
+			if (n == 0 && d.pendingOutput() != 0) {
+				// a surrogate pair, but room for one char only
+				n = splitPair(dest, off + x);
+			}
+			this.winOff += (int) (d.bytesConsumed() - b);
+			d.dropInput();
+			if (n < 0) {
+				dest[off + x++] = '\uFFFD';
+			} else {
+				x += n;
+			}
+		}
+		return x;
+	}
+
+	// decodes the pending code point, stores its first char and holds the second
+	private int splitPair(char[] dest, int off) {
+		char[] p = this.pair;
+		if (p == null) {
+			p = this.pair = new char[2];
+		}
+		int n = this.dec.doDecode(p, 0, 2, 1);
+		if (n > 0) {
+			dest[off] = p[0];
+			if (n == 2) {
+				this.held = p[1];
+			}
+			return 1;
+		}
+		return n;
+	}
+
+	/**
+	 * Returns {@code true} if the end of the compressed stream has been
+	 * reached and all decompressed bytes have been decoded.
+	 *
+	 * @return {@code true} if there is no further text.
+	 */
+	public boolean finished() {
+		return this.winOff == this.winLen && this.eof && this.held < 0;
+	}
+
+	private void decode(byte[] w, int off, int len, String replace) {
+		Decoder d = this.dec;
+		d.doSetInput(w, off, len);
+		try {
+			while (true) {
+				int n = d.doDecode(this.sb);
+				if (n == 0) {
+					break;
+				}
+				if (n < 0) {
+					this.sb.append(replace);
+				}
+			}
+		} finally {
+			d.dropInput();
+		}
+	}
+
+	// inflates the next window. returns false at the end of the stream.
+	private boolean fill() {
+		if (this.eof) {
+			return false;
+		}
+		OpenInflater i = this.inf;
+		try {
+			while (true) {
+				int n = i.inflate(this.win, 0, this.win.length);
+				if (n != 0) {
+					this.winOff = 0;
+					this.winLen = n;
+					return true;
+				}
+				if (i.finished()) {
+					this.eof = true;
+					release();
+					return false;
+				}
+				if (i.needsDictionary()) {
+					throw new DataFormatException("Preset dictionary required.");
+				}
+				if (i.needsInput()) {
+					int r = this.src.read(this.in, 0, this.in.length);
+					if (r < 0) {
+						throw new DataFormatException("Unexpected end of compressed data.");
+					}
+					i.setInput(this.in, 0, r);
+				}
+			}
+		} catch (java.util.zip.DataFormatException ex) {
+			throw new DataFormatException(ex);
+		}
+	}
+
+	// hands unconsumed input back to the buffer
+	private void release() {
+		IOBuffer s = this.src;
+		s.pos(s.pos() - this.inf.getRemaining());
+		this.inf.setInput(EMPTY);
+	}
+
+	private void ensureOpen() {
+		if (this.win == null) {
+			throw new IllegalStateException("TextInflater was closed.");
+		}
+	}
+
+	/**
+	 * Releases this {@code TextInflater}'s resources. The underlying buffer,
+	 * inflater and decoder are not closed.
+	 */
+	@Override
+	public void close() {
+		if (this.win != null) {
+			if (!this.eof) {
+				release();
+			}
+			this.dec.dropInput();
+			BufferCache.releaseBuffer(this.win);
+			BufferCache.releaseBuffer(this.in);
+			this.win = null;
+			this.in = null;
+		}
+	}
+}
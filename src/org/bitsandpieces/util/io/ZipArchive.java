@@ -0,0 +1,763 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.bitsandpieces.util.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.bitsandpieces.util.Endian;
+import org.bitsandpieces.util.zip.InflaterPool;
+import org.bitsandpieces.util.zip.OpenCRC32;
+import org.bitsandpieces.util.zip.OpenInflater;
+
+/**
+ * Read-only random access to the entries of a ZIP (or JAR) archive. The
+ * central directory is parsed exactly once, into a compact index backed by
+ * primitive arrays, which maps entry names to their local headers. ZIP64
+ * archives are supported.
+ * <p>
+ * Entries may be read concurrently by any number of threads. Every read
+ * operation borrows a sibling {@link IOBuffer} and an {@link OpenInflater}
+ * from lock-free pools, so reads neither block each other nor allocate once
+ * the pools are warm. Only {@code STORED} and {@code DEFLATED} entries are supported.
+ * Every entry read is verified against the CRC-32 recorded in the central
+ * directory.
+ * <p>
+ * Entry names are always interpreted as UTF-8, like {@link java.util.zip.ZipFile
+ * ZipFile} does by default.
+ *
+ * @author Jan Kebernik
+ */
+public final class ZipArchive implements AutoCloseable {
+
+	private static final int LOC_SIG = 0x04034b50;
+	private static final int CEN_SIG = 0x02014b50;
+	private static final int END_SIG = 0x06054b50;
+	private static final int ZIP64_END_SIG = 0x06064b50;
+	private static final int ZIP64_LOC_SIG = 0x07064b50;
+
+	private static final int LOC_HDR = 30;
+	private static final int CEN_HDR = 46;
+	private static final int END_HDR = 22;
+	private static final int ZIP64_LOC_HDR = 20;
+	private static final int ZIP64_END_HDR = 56;
+	private static final int MAX_COMMENT = 0xffff;
+	private static final int ZIP64_EXTRA = 0x0001;
+
+	private static final long ZIP64_MAGIC = 0xffffffffL;
+	private static final int ZIP64_MAGIC_COUNT = 0xffff;
+
+	private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;	// limit on some VMs
+
+	/**
+	 * Compression method for uncompressed entries.
+	 */
+	public static final int STORED = 0;
+
+	/**
+	 * Compression method for compressed (deflated) entries.
+	 */
+	public static final int DEFLATED = 8;
+
+	private static final Endian LE = Endian.LITTLE;
+
+	// zip entries are always raw deflate streams
+	private static final InflaterPool INFLATERS = new InflaterPool(true);
+
+	private final IOBuffer root;
+	// idle readers. slots are claimed and filled atomically.
+	private final AtomicReferenceArray<Reader> readers = new AtomicReferenceArray<>(
+			Math.max(4, Runtime.getRuntime().availableProcessors() << 1));
+	private volatile boolean closed;
+	private final int count;
+	// all names back-to-back. name i occupies [nameOffsets[i], nameOffsets[i + 1])
+	private final byte[] names;
+	private final int[] nameOffsets;
+	private final long[] offsets;	// local header offsets
+	private final long[] compressedSizes;
+	private final long[] sizes;
+	private final int[] crcs;
+	private final int[] info;		// method | flags << 16
+	// open addressing, linear probing. stores entry index + 1, 0 if empty.
+	private final int[] table;
+
+	/**
+	 * Opens the archive at the specified address and parses its central
+	 * directory.
+	 *
+	 * @param address the address of the archive.
+	 * @throws DataFormatException if the archive is malformed.
+	 */
+	public ZipArchive(IOAddress address) throws IOException {
+		IOBuffer buf = address.open();
+		try {
+			buf.endian(LE);
+			long s = buf.size();
+			// locate the end of central directory record
+			int tlen = (int) Math.min(s, END_HDR + MAX_COMMENT);
+			if (tlen < END_HDR) {
+				throw new DataFormatException("Not a ZIP archive.");
+			}
+			long tpos = s - tlen;
+			byte[] tail = new byte[tlen];
+			readFully(buf, tpos, tail, 0, tlen);
+			int e = tlen - END_HDR;
+			while (LE.doGetInt(tail, e) != END_SIG
+					|| e + END_HDR + (LE.doGetChar(tail, e + 20)) > tlen) {
+				if (--e < 0) {
+					throw new DataFormatException("Not a ZIP archive.");
+				}
+			}
+			long endPos = tpos + e;
+			long n = LE.doGetChar(tail, e + 10);
+			long cenLen = LE.doGetInt(tail, e + 12) & 0xffffffffL;
+			long cenPos = LE.doGetInt(tail, e + 16) & 0xffffffffL;
+			if (n == ZIP64_MAGIC_COUNT || cenLen == ZIP64_MAGIC || cenPos == ZIP64_MAGIC) {
+				long locPos = endPos - ZIP64_LOC_HDR;
+				if (locPos >= 0L && buf.readInt(locPos) == ZIP64_LOC_SIG) {
+					long end64Pos = buf.readLong(locPos + 8L);
+					if (end64Pos < 0L || end64Pos > locPos - ZIP64_END_HDR
+							|| buf.readInt(end64Pos) != ZIP64_END_SIG) {
+						throw new DataFormatException("Invalid ZIP64 end header.");
+					}
+					n = buf.readLong(end64Pos + 32L);
+					cenLen = buf.readLong(end64Pos + 40L);
+					cenPos = buf.readLong(end64Pos + 48L);
+					endPos = end64Pos;
+				}
+			}
+			if (cenLen < 0L || cenPos < 0L || cenLen > endPos - cenPos) {
+				throw new DataFormatException("Invalid central directory bounds.");
+			}
+			if (cenLen > MAX_LENGTH) {
+				throw new DataFormatException("Central directory too large: " + cenLen);
+			}
+			if (n < 0L || n > cenLen / CEN_HDR) {
+				throw new DataFormatException("Invalid number of entries: " + n);
+			}
+			byte[] cen = new byte[(int) cenLen];
+			readFully(buf, cenPos, cen, 0, cen.length);
+
+			int c = (int) n;
+			this.count = c;
+			this.nameOffsets = new int[c + 1];
+			this.offsets = new long[c];
+			this.compressedSizes = new long[c];
+			this.sizes = new long[c];
+			this.crcs = new int[c];
+			this.info = new int[c];
+			byte[] nb = new byte[cen.length - c * CEN_HDR];
+			int nlen = 0;
+			int p = 0;
+			for (int i = 0; i < c; i++) {
+				if (p > cen.length - CEN_HDR || LE.doGetInt(cen, p) != CEN_SIG) {
+					throw new DataFormatException("Invalid central directory header.");
+				}
+				int flags = LE.doGetChar(cen, p + 8);
+				int method = LE.doGetChar(cen, p + 10);
+				int crc = LE.doGetInt(cen, p + 16);
+				long csize = LE.doGetInt(cen, p + 20) & 0xffffffffL;
+				long size = LE.doGetInt(cen, p + 24) & 0xffffffffL;
+				int nl = LE.doGetChar(cen, p + 28);
+				int el = LE.doGetChar(cen, p + 30);
+				int cl = LE.doGetChar(cen, p + 32);
+				long off = LE.doGetInt(cen, p + 42) & 0xffffffffL;
+				int x = p + CEN_HDR;
+				int next = x + nl + el + cl;
+				if (next > cen.length || next < 0) {
+					throw new DataFormatException("Invalid central directory header.");
+				}
+				System.arraycopy(cen, x, nb, nlen, nl);
+				nlen += nl;
+				if (size == ZIP64_MAGIC || csize == ZIP64_MAGIC || off == ZIP64_MAGIC) {
+					// resolve ZIP64 extended information
+					for (int ex = x + nl, exm = ex + el; ex <= exm - 4;) {
+						int id = LE.doGetChar(cen, ex);
+						int sz = LE.doGetChar(cen, ex + 2);
+						ex += 4;
+						if (ex + sz > exm) {
+							break;
+						}
+						if (id == ZIP64_EXTRA) {
+							int q = ex;
+							int qm = ex + sz;
+							if (size == ZIP64_MAGIC && q <= qm - 8) {
+								size = LE.doGetLong(cen, q);
+								q += 8;
+							}
+							if (csize == ZIP64_MAGIC && q <= qm - 8) {
+								csize = LE.doGetLong(cen, q);
+								q += 8;
+							}
+							if (off == ZIP64_MAGIC && q <= qm - 8) {
+								off = LE.doGetLong(cen, q);
+							}
+							break;
+						}
+						ex += sz;
+					}
+				}
+				if (size < 0L || csize < 0L || off < 0L || off > cenPos) {
+					throw new DataFormatException("Invalid central directory header.");
+				}
+				this.nameOffsets[i + 1] = nlen;
+				this.offsets[i] = off;
+				this.compressedSizes[i] = csize;
+				this.sizes[i] = size;
+				this.crcs[i] = crc;
+				this.info[i] = method | flags << 16;
+				p = next;
+			}
+			this.names = nlen == nb.length ? nb : Arrays.copyOf(nb, nlen);
+			// build the name index
+			int cap = Integer.highestOneBit(Math.max(c, 1)) << 2;
+			int mask = cap - 1;
+			int[] t = new int[cap];
+			for (int i = 0; i < c; i++) {
+				int from = this.nameOffsets[i];
+				int h = hash(this.names, from, this.nameOffsets[i + 1] - from) & mask;
+				while (t[h] != 0) {
+					h = (h + 1) & mask;
+				}
+				t[h] = i + 1;
+			}
+			this.table = t;
+			this.root = buf;
+		} catch (Throwable ex) {
+			try {
+				buf.close();
+			} catch (Throwable ex2) {
+				ex.addSuppressed(ex2);
+			}
+			throw ex;
+		}
+	}
+
+	/**
+	 * Returns the number of entries in this archive.
+	 *
+	 * @return the number of entries in this archive.
+	 */
+	public int size() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the index of the first entry with the specified name, or
+	 * {@code -1} if there is no such entry. Does not allocate.
+	 *
+	 * @param name the name of the entry.
+	 * @return the index of the first entry with the specified name, or
+	 * {@code -1} if there is no such entry.
+	 */
+	public int indexOf(CharSequence name) {
+		if (name == null) {
+			throw new NullPointerException();
+		}
+		int[] t = this.table;
+		int mask = t.length - 1;
+		int h = hash(name) & mask;
+		int[] no = this.nameOffsets;
+		for (int k; (k = t[h]) != 0; h = (h + 1) & mask) {
+			int from = no[k - 1];
+			if (equals(name, this.names, from, no[k] - from)) {
+				return k - 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the first entry whose name is equal to the specified
+	 * (UTF-8 encoded) range of bytes, or {@code -1} if there is no such entry.
+	 *
+	 * @param name the array containing the encoded name.
+	 * @param off the offset into the array.
+	 * @param len the number of bytes in the encoded name.
+	 * @return the index of the first entry with the specified name, or
+	 * {@code -1} if there is no such entry.
+	 */
+	public int indexOf(byte[] name, int off, int len) {
+		if (off < 0 || len < 0 || off > name.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		int[] t = this.table;
+		int mask = t.length - 1;
+		int h = hash(name, off, len) & mask;
+		int[] no = this.nameOffsets;
+		byte[] nb = this.names;
+		for (int k; (k = t[h]) != 0; h = (h + 1) & mask) {
+			int from = no[k - 1];
+			if (no[k] - from == len && rangeEquals(nb, from, name, off, len)) {
+				return k - 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the name of the specified entry.
+	 *
+	 * @param index the index of the entry.
+	 * @return the name of the specified entry.
+	 */
+	public String name(int index) {
+		checkIndex(index);
+		int from = this.nameOffsets[index];
+		return new String(this.names, from, this.nameOffsets[index + 1] - from, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns {@code true} if the specified entry is a directory, i.e. if its
+	 * name ends with {@code '/'}.
+	 *
+	 * @param index the index of the entry.
+	 * @return {@code true} if the specified entry is a directory.
+	 */
+	public boolean isDirectory(int index) {
+		checkIndex(index);
+		int to = this.nameOffsets[index + 1];
+		return to != this.nameOffsets[index] && this.names[to - 1] == '/';
+	}
+
+	/**
+	 * Returns the compression method of the specified entry, usually either
+	 * {@link #STORED} or {@link #DEFLATED}.
+	 *
+	 * @param index the index of the entry.
+	 * @return the compression method of the specified entry.
+	 */
+	public int method(int index) {
+		checkIndex(index);
+		return this.info[index] & 0xffff;
+	}
+
+	/**
+	 * Returns the uncompressed size of the specified entry.
+	 *
+	 * @param index the index of the entry.
+	 * @return the uncompressed size of the specified entry.
+	 */
+	public long uncompressedSize(int index) {
+		checkIndex(index);
+		return this.sizes[index];
+	}
+
+	/**
+	 * Returns the compressed size of the specified entry.
+	 *
+	 * @param index the index of the entry.
+	 * @return the compressed size of the specified entry.
+	 */
+	public long compressedSize(int index) {
+		checkIndex(index);
+		return this.compressedSizes[index];
+	}
+
+	/**
+	 * Returns the CRC-32 of the uncompressed data of the specified entry.
+	 *
+	 * @param index the index of the entry.
+	 * @return the CRC-32 of the uncompressed data of the specified entry.
+	 */
+	public int crc(int index) {
+		checkIndex(index);
+		return this.crcs[index];
+	}
+
+	/**
+	 * Reads and returns the uncompressed contents of the specified entry.
+	 *
+	 * @param index the index of the entry.
+	 * @return the uncompressed contents of the specified entry.
+	 * @throws IllegalStateException if the entry is too large to fit into an
+	 * array.
+	 * @throws DataFormatException if the entry is malformed or does not match
+	 * its recorded checksum.
+	 */
+	public byte[] read(int index) throws IOException {
+		checkIndex(index);
+		long size = this.sizes[index];
+		if (size > MAX_LENGTH) {
+			throw new IllegalStateException("Entry too large for an array: " + size);
+		}
+		byte[] b = new byte[(int) size];
+		doRead(index, b, 0);
+		return b;
+	}
+
+	/**
+	 * Reads the uncompressed contents of the specified entry into the
+	 * specified array. The array must have room for the entry's
+	 * {@link #uncompressedSize(int) uncompressed size}.
+	 *
+	 * @param index the index of the entry.
+	 * @param dest the array into which to read.
+	 * @param off the offset into the array.
+	 * @return the number of bytes read.
+	 * @throws IndexOutOfBoundsException if the array does not have enough room
+	 * for the entry.
+	 * @throws DataFormatException if the entry is malformed or does not match
+	 * its recorded checksum.
+	 */
+	public int read(int index, byte[] dest, int off) throws IOException {
+		checkIndex(index);
+		long size = this.sizes[index];
+		if (off < 0 || off > dest.length || size > dest.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		return doRead(index, dest, off);
+	}
+
+	/**
+	 * Writes the uncompressed contents of the specified entry to the specified
+	 * buffer, starting at its current position. The buffer's position is
+	 * advanced by the number of bytes written.
+	 *
+	 * @param index the index of the entry.
+	 * @param dest the buffer to write to.
+	 * @return the number of bytes written.
+	 * @throws DataFormatException if the entry is malformed or does not match
+	 * its recorded checksum.
+	 */
+	public long read(int index, IOBuffer dest) throws IOException {
+		checkIndex(index);
+		if (dest == null) {
+			throw new NullPointerException();
+		}
+		Reader r = requestReader();
+		try {
+			IOBuffer in = r.in;
+			long pos = dataPos(r, index);
+			long csize = this.compressedSizes[index];
+			long size = this.sizes[index];
+			OpenCRC32 crc = r.crc;
+			crc.reset();
+			byte[] out = BufferCache.requestBuffer();
+			try {
+				if ((this.info[index] & 0xffff) == STORED) {
+					long x = 0L;
+					while (x != size) {
+						int k = (int) Math.min(size - x, out.length);
+						readFully(in, pos + x, out, 0, k);
+						crc.update(out, 0, k);
+						dest.write(out, 0, k);
+						x += k;
+					}
+				} else {
+					OpenInflater inf = INFLATERS.requestInstance();
+					byte[] tmp = BufferCache.requestBuffer();
+					try {
+						long x = 0L;
+						while (x != size) {
+							int k = inflate(in, inf, tmp, pos, pos + csize, out, 0, (int) Math.min(size - x, out.length));
+							crc.update(out, 0, k);
+							dest.write(out, 0, k);
+							x += k;
+						}
+					} finally {
+						BufferCache.releaseBuffer(tmp);
+						INFLATERS.releaseInstance(inf);
+					}
+				}
+			} finally {
+				BufferCache.releaseBuffer(out);
+			}
+			checkCRC(index, (int) crc.getValue());
+			return size;
+		} finally {
+			releaseReader(r);
+		}
+	}
+
+	private int doRead(int index, byte[] dest, int off) throws IOException {
+		int size = (int) this.sizes[index];
+		Reader r = requestReader();
+		try {
+			IOBuffer in = r.in;
+			long pos = dataPos(r, index);
+			if ((this.info[index] & 0xffff) == STORED) {
+				readFully(in, pos, dest, off, size);
+			} else {
+				OpenInflater inf = INFLATERS.requestInstance();
+				byte[] tmp = BufferCache.requestBuffer();
+				try {
+					inflate(in, inf, tmp, pos, pos + this.compressedSizes[index], dest, off, size);
+				} finally {
+					BufferCache.releaseBuffer(tmp);
+					INFLATERS.releaseInstance(inf);
+				}
+			}
+			OpenCRC32 crc = r.crc;
+			crc.reset();
+			crc.update(dest, off, size);
+			checkCRC(index, (int) crc.getValue());
+		} finally {
+			releaseReader(r);
+		}
+		return size;
+	}
+
+	// inflates exactly "len" bytes of the compressed data in [start, end).
+	// the next input position is derived from the inflater's statistics.
+	private static int inflate(IOBuffer in, OpenInflater inf, byte[] tmp, long start, long end, byte[] dest, int off, int len) throws IOException {
+		try {
+			int n = 0;
+			while (n != len) {
+				int k = inf.inflate(dest, off + n, len - n);
+				if (k == 0) {
+					if (inf.finished()) {
+						throw new DataFormatException("Entry is shorter than its recorded size.");
+					}
+					if (inf.needsInput()) {
+						long pos = start + inf.getBytesRead();
+						int b = (int) Math.min(end - pos, tmp.length);
+						if (b == 0) {
+							throw new DataFormatException("Unexpected end of compressed data.");
+						}
+						readFully(in, pos, tmp, 0, b);
+						inf.setInput(tmp, 0, b);
+						continue;
+					}
+					if (inf.needsDictionary()) {
+						throw new DataFormatException("Entry requires a preset dictionary.");
+					}
+				}
+				n += k;
+			}
+			return len;
+		} catch (java.util.zip.DataFormatException ex) {
+			throw new DataFormatException(ex);
+		}
+	}
+
+	// parses the local header and returns the position of the entry's data
+	private long dataPos(Reader r, int index) throws IOException {
+		int inf = this.info[index];
+		if ((inf & (1 << 16)) != 0) {
+			throw new DataFormatException("Encrypted entries are not supported.");
+		}
+		int method = inf & 0xffff;
+		if (method != STORED && method != DEFLATED) {
+			throw new DataFormatException("Unsupported compression method: " + method);
+		}
+		long off = this.offsets[index];
+		IOBuffer in = r.in;
+		byte[] loc = r.loc;
+		readFully(in, off, loc, 0, LOC_HDR);
+		if (LE.doGetInt(loc, 0) != LOC_SIG) {
+			throw new DataFormatException("Invalid local header.");
+		}
+		long pos = off + LOC_HDR + LE.doGetChar(loc, 26) + LE.doGetChar(loc, 28);
+		long csize = this.compressedSizes[index];
+		if (pos > in.size() - csize) {
+			throw new DataFormatException("Entry exceeds archive bounds.");
+		}
+		if (method == STORED && csize != this.sizes[index]) {
+			throw new DataFormatException("Invalid size of stored entry.");
+		}
+		return pos;
+	}
+
+	private void checkCRC(int index, int crc) {
+		if (crc != this.crcs[index]) {
+			throw new DataFormatException("Invalid entry CRC-32 (expected 0x"
+					+ Integer.toHexString(this.crcs[index]) + " but got 0x"
+					+ Integer.toHexString(crc) + ")");
+		}
+	}
+
+	// returns an idle reader, or a new one if there is none.
+	private Reader requestReader() throws IOException {
+		if (this.closed) {
+			throw new IOException("ZipArchive was closed.");
+		}
+		AtomicReferenceArray<Reader> a = this.readers;
+		for (int i = 0, n = a.length(); i < n; i++) {
+			if (a.get(i) != null) {
+				Reader r = a.getAndSet(i, null);
+				if (r != null) {
+					return r;
+				}
+			}
+		}
+		// rare. the root buffer is flushed while creating a sibling, and
+		// close() closes it under the same lock.
+		IOBuffer root = this.root;
+		synchronized (root) {
+			if (this.closed) {
+				throw new IOException("ZipArchive was closed.");
+			}
+			return new Reader(root.createSibling());
+		}
+	}
+
+	// pools the reader, or closes it if the pool is full or the archive closed.
+	private void releaseReader(Reader r) throws IOException {
+		AtomicReferenceArray<Reader> a = this.readers;
+		if (!this.closed) {
+			for (int i = 0, n = a.length(); i < n; i++) {
+				if (a.get(i) == null && a.compareAndSet(i, null, r)) {
+					if (this.closed) {
+						// raced with close(). whoever takes it back closes it.
+						r = a.getAndSet(i, null);
+						if (r != null) {
+							r.in.close();
+						}
+					}
+					return;
+				}
+			}
+		}
+		r.in.close();
+	}
+
+	// everything a read needs besides its inflater.
+	private static final class Reader {
+
+		final IOBuffer in;
+		final byte[] loc = new byte[LOC_HDR];
+		final OpenCRC32 crc = new OpenCRC32();
+
+		Reader(IOBuffer in) {
+			this.in = in;
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= this.count) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + this.count);
+		}
+	}
+
+	private static void readFully(IOBuffer buf, long pos, byte[] b, int off, int len) throws IOException {
+		if (len != 0 && buf.read(pos, b, off, len) != len) {
+			throw new DataFormatException("Unexpected end of archive.");
+		}
+	}
+
+	private static boolean rangeEquals(byte[] a, int aOff, byte[] b, int bOff, int len) {
+		for (int i = 0; i < len; i++) {
+			if (a[aOff + i] != b[bOff + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		return h ^ (h >>> 13);
+	}
+
+	private static int hash(byte[] b, int off, int len) {
+		int h = 0;
+		for (int m = off + len; off < m; off++) {
+			h = 31 * h + (b[off] & 0xff);
+		}
+		return mix(h);
+	}
+
+	// same as hash(byte[], int, int) over the UTF-8 encoding of the sequence,
+	// without actually encoding it. unpaired surrogates are encoded as '?'.
+	private static int hash(CharSequence s) {
+		int h = 0;
+		for (int i = 0, m = s.length(); i < m; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				h = 31 * h + c;
+			} else if (c < 0x800) {
+				h = 31 * h + (0xc0 | (c >>> 6));
+				h = 31 * h + (0x80 | (c & 0x3f));
+			} else if (Character.isSurrogate(c)) {
+				char d;
+				if (Character.isHighSurrogate(c) && i + 1 < m && Character.isLowSurrogate(d = s.charAt(i + 1))) {
+					int cp = Character.toCodePoint(c, d);
+					i++;
+					h = 31 * h + (0xf0 | (cp >>> 18));
+					h = 31 * h + (0x80 | ((cp >>> 12) & 0x3f));
+					h = 31 * h + (0x80 | ((cp >>> 6) & 0x3f));
+					h = 31 * h + (0x80 | (cp & 0x3f));
+				} else {
+					h = 31 * h + '?';
+				}
+			} else {
+				h = 31 * h + (0xe0 | (c >>> 12));
+				h = 31 * h + (0x80 | ((c >>> 6) & 0x3f));
+				h = 31 * h + (0x80 | (c & 0x3f));
+			}
+		}
+		return mix(h);
+	}
+
+	// compares the UTF-8 encoding of the sequence to the specified bytes,
+	// without actually encoding it.
+	private static boolean equals(CharSequence s, byte[] b, int off, int len) {
+		int m = off + len;
+		for (int i = 0, n = s.length(); i < n; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				if (off == m || b[off++] != c) {
+					return false;
+				}
+			} else if (c < 0x800) {
+				if (off > m - 2
+						|| b[off++] != (byte) (0xc0 | (c >>> 6))
+						|| b[off++] != (byte) (0x80 | (c & 0x3f))) {
+					return false;
+				}
+			} else if (Character.isSurrogate(c)) {
+				char d;
+				if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(d = s.charAt(i + 1))) {
+					int cp = Character.toCodePoint(c, d);
+					i++;
+					if (off > m - 4
+							|| b[off++] != (byte) (0xf0 | (cp >>> 18))
+							|| b[off++] != (byte) (0x80 | ((cp >>> 12) & 0x3f))
+							|| b[off++] != (byte) (0x80 | ((cp >>> 6) & 0x3f))
+							|| b[off++] != (byte) (0x80 | (cp & 0x3f))) {
+						return false;
+					}
+				} else if (off == m || b[off++] != '?') {
+					return false;
+				}
+			} else {
+				if (off > m - 3
+						|| b[off++] != (byte) (0xe0 | (c >>> 12))
+						|| b[off++] != (byte) (0x80 | ((c >>> 6) & 0x3f))
+						|| b[off++] != (byte) (0x80 | (c & 0x3f))) {
+					return false;
+				}
+			}
+		}
+		return off == m;
+	}
+
+	/**
+	 * Closes this archive. Reads that are in progress complete normally, but no
+	 * new reads can be started. The underlying source is closed once the last
+	 * read completes.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.closed = true;
+		AtomicReferenceArray<Reader> a = this.readers;
+		try {
+			for (int i = 0, n = a.length(); i < n; i++) {
+				Reader r = a.getAndSet(i, null);
+				if (r != null) {
+					r.in.close();
+				}
+			}
+		} finally {
+			IOBuffer root = this.root;
+			synchronized (root) {
+				root.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.bitsandpieces.util.zip;
+
+import java.util.Arrays;
+import org.bitsandpieces.util.io.ObjectCache;
+
+/**
+ * Thread-safe pool of equally configured {@link OpenInflater}s. Each
+ * {@code OpenInflater} owns a 32KB window plus several code tables, which makes
+ * creating a new instance for every (small) data-stream comparatively
+ * expensive. Instances returned by this pool are {@link OpenInflater#reset()
+ * reset} in place instead, without re-allocating any arrays.
+ * <p>
+ * A pool may optionally be primed with a preset dictionary. If {@code nowrap}
+ * is {@code true}, every requested instance has the dictionary loaded into its
+ * window already. Otherwise, a ZLIB header must first request the dictionary,
+ * which can then be supplied via {@link #setDictionary(OpenInflater)}.
+ * </p>
+ * <p>
+ * As with any {@link ObjectCache}, releasing instances back into the pool is
+ * not strictly necessary, but the same instance must never be released more
+ * than once at the same time.
+ * </p>
+ *
+ * @author Jan Kebernik
+ */
+public final class InflaterPool extends ObjectCache<OpenInflater> {
+
+	private static final byte[] EMPTY = {};
+
+	private final boolean nowrap;
+	private final byte[] dictionary;
+
+	/**
+	 * Creates a new {@code InflaterPool} of ZLIB/GZIP inflaters without a
+	 * preset dictionary.
+	 */
+	public InflaterPool() {
+		this(false);
+	}
+
+	/**
+	 * Creates a new {@code InflaterPool} without a preset dictionary.
+	 *
+	 * @param nowrap if {@code true}, pooled inflaters expect raw DEFLATE data.
+	 */
+	public InflaterPool(boolean nowrap) {
+		this(nowrap, EMPTY, 0, 0);
+	}
+
+	/**
+	 * Creates a new {@code InflaterPool} primed with the specified preset
+	 * dictionary.
+	 *
+	 * @param nowrap if {@code true}, pooled inflaters expect raw DEFLATE data.
+	 * @param b the dictionary data bytes. The specified range is copied.
+	 * @param off the start offset of the data.
+	 * @param len the length of the data.
+	 */
+	public InflaterPool(boolean nowrap, byte[] b, int off, int len) {
+		super(() -> new OpenInflater(nowrap));
+		if (off > b.length - len || off < 0 || len < 0) {
+			throw new IndexOutOfBoundsException();
+		}
+		this.nowrap = nowrap;
+		this.dictionary = len == 0 ? EMPTY : Arrays.copyOfRange(b, off, off + len);
+	}
+
+	/**
+	 * Returns {@code true} if this pool's inflaters expect raw DEFLATE data.
+	 *
+	 * @return {@code true} if this pool's inflaters expect raw DEFLATE data.
+	 */
+	public boolean nowrap() {
+		return this.nowrap;
+	}
+
+	/**
+	 * Returns {@code true} if this pool was primed with a preset dictionary.
+	 *
+	 * @return {@code true} if this pool was primed with a preset dictionary.
+	 */
+	public boolean hasDictionary() {
+		return this.dictionary.length != 0;
+	}
+
+	/**
+	 * Returns a cached or new {@code OpenInflater}, ready to process a new
+	 * data-stream. If this pool expects raw DEFLATE data and was primed with a
+	 * preset dictionary, that dictionary is already set.
+	 *
+	 * @return a cached or new {@code OpenInflater}.
+	 */
+	@Override
+	public OpenInflater requestInstance() {
+		OpenInflater inf = super.requestInstance();
+		inf.reset();
+		if (this.nowrap && this.dictionary.length != 0) {
+			inf.setDictionary(this.dictionary);
+		}
+		return inf;
+	}
+
+	/**
+	 * Resets the specified {@code OpenInflater}, discarding any unprocessed
+	 * input, and releases it into this pool. The instance must have been
+	 * obtained from this pool and must not be used after this method returns.
+	 *
+	 * @param inf the inflater to release.
+	 */
+	@Override
+	public void releaseInstance(OpenInflater inf) {
+		// drops the reference to the input array early
+		inf.reset();
+		super.releaseInstance(inf);
+	}
+
+	/**
+	 * Supplies this pool's preset dictionary to the specified inflater, which
+	 * must currently {@link OpenInflater#needsDictionary() need a dictionary}.
+	 *
+	 * @param inf the inflater requiring a dictionary.
+	 * @throws IllegalStateException if this pool has no preset dictionary, or
+	 * if the inflater does not require one.
+	 * @throws IllegalArgumentException if the dictionary's checksum does not
+	 * match the one requested by the inflater.
+	 */
+	public void setDictionary(OpenInflater inf) {
+		if (this.dictionary.length == 0) {
+			throw new IllegalStateException("no preset dictionary");
+		}
+		if (!inf.needsDictionary()) {
+			throw new IllegalStateException("no dictionary is required");
+		}
+		inf.setDictionary(this.dictionary);
+	}
+}
@@ -205,6 +205,8 @@ public class OpenInflater {
 	private final boolean nativeCRC32;
 
 	private OpenChecksum adler;
+	// retained across resets, so that re-used instances need not allocate
+	private OpenChecksum adler32, crc32;
 	private int mode;
 	private int hold, bits, whave, wnext;
 	private boolean lastBlock;
@@ -269,7 +271,7 @@ public class OpenInflater {
 		totalIn = 0L;
 		totalOut = 0L;
 		this.nativeCRC32 = nativeCRC32;
-		adler = new OpenAdler32();
+		adler = adler32 = new OpenAdler32();
 	}
 
 	private OpenInflater(State s) {
@@ -281,6 +283,12 @@ public class OpenInflater {
 		wrap = s.wrap;
 		adler = s.adler.copy();
 		//adler = new OpenAdler32().reset(s.adler);
+		if (adler instanceof OpenAdler32) {
+			adler32 = adler;
+		} else {
+			crc32 = adler;
+			adler32 = new OpenAdler32();
+		}
 		mode = s.mode;
 		flags = s.flags;
 		hold = s.hold;
@@ -407,6 +415,11 @@ public class OpenInflater {
 		}
 	}
 
+	/**
+	 * Resets this inflater so that a new set of input data can be processed.
+	 * No arrays are re-allocated, making this considerably cheaper than
+	 * creating a new instance.
+	 */
 	public void reset() {
 		nextIn = EMPTY;
 		nextInIndex
@@ -425,10 +438,13 @@ public class OpenInflater {
 				= have
 				= distcodeIndex
 				= lenbits
-				= distbits = 0;
+				= distbits
+				= flags = 0;
 		totalIn = totalOut = 0L;
-		//adler.reset();
-		//adler = 1;	// not necessary
+		adler32.reset();
+		adler = adler32;
+		lencode = LENFIX;
+		distcode = DISTFIX;
 		mode = HEAD;
 		lastBlock = false;
 	}
@@ -514,6 +530,11 @@ public class OpenInflater {
 	 * when inflate() returns 0 and needsDictionary() returns true indicating
 	 * that a preset dictionary is required. The method getAdler() can be used
 	 * to get the Adler-32 value of the dictionary needed.
+	 * <p>
+	 * If {@code nowrap} is {@code true}, there is no header to request a
+	 * dictionary, and one may be set at any time instead (usually right after
+	 * construction or {@link #reset() reset}).
+	 * </p>
 	 *
 	 * @param b the dictionary data bytes
 	 * @param off the start offset of the data
@@ -526,7 +547,12 @@ public class OpenInflater {
 			throw new IndexOutOfBoundsException();
 		}
 		if (mode != DICT) {
-			throw new IllegalStateException("no ditionary is required");
+			if (wrap) {
+				throw new IllegalStateException("no ditionary is required");
+			}
+			// raw inflate. same as zlib's inflateSetDictionary()
+			updatewindow(b, off + len, len);
+			return;
 		}
 		int a = OpenAdler32.updateAdler32(1, b, off, len);
 
@@ -643,7 +669,12 @@ public class OpenInflater {
 							_bits += 8;
 						}
 						if (_hold == 0x8b1f) {
-							adler = nativeCRC32 ? new HybridCRC32() : new OpenCRC32();
+							if (crc32 == null) {
+								crc32 = nativeCRC32 ? new HybridCRC32() : new OpenCRC32();
+							} else {
+								crc32.reset();
+							}
+							adler = crc32;
 							adler.update(_hold & 0xff);
 							adler.update((_hold >>> 8) & 0xff);
 							//int a = OpenCRC32.updateCRC32(0, _hold);